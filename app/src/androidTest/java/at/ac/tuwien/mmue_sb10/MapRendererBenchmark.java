@@ -0,0 +1,108 @@
+package at.ac.tuwien.mmue_sb10;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.util.DisplayMetrics;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import at.ac.tuwien.mmue_sb10.sim.InputRecording;
+import at.ac.tuwien.mmue_sb10.sim.PlayerSim;
+import at.ac.tuwien.mmue_sb10.sim.PlayerSimAdapter;
+import at.ac.tuwien.mmue_sb10.sim.PlayerState;
+import at.ac.tuwien.mmue_sb10.util.LatencyHistogram;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Replays the same camera path with every MapRenderer and logs the draw time per frame and the memory of each strategy.
+ * The camera paths are the solutions of the SolvabilityAnalyzer (gradle :sim:analyzeStages -Psolutions=app/src/androidTest/assets/camera_paths, relative to the root project).
+ * Results are logged with the tag MapRendererBenchmark
+ * @since 1.1
+ * @author Lukas Lidauer
+ */
+@RunWith(AndroidJUnit4.class)
+public class MapRendererBenchmark {
+    private static final String TAG = MapRendererBenchmark.class.getSimpleName();
+    private static final int STEPS_PER_FRAME = 2; //120Hz simulation drawn at 60fps
+    private static final int[] LEVELS = {-5, -4, -3, -2, -1, 1, 2, 3, 4, 5, 6, 7, 8};
+
+    @Test
+    public void compareRenderers() throws IOException {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        Context test_context = InstrumentationRegistry.getInstrumentation().getContext();
+        DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+        int width = Math.max(metrics.widthPixels, metrics.heightPixels); //the game runs in landscape
+        int heigth = Math.min(metrics.widthPixels, metrics.heightPixels);
+
+        Bitmap screen = Bitmap.createBitmap(width, heigth, Bitmap.Config.ARGB_8888);
+        Canvas c = new Canvas(screen);
+        Stage stage = new Stage(context, metrics.density);
+        PlayerSim sim = new PlayerSim(new PlayerSimAdapter());
+        Camera camera = new Camera();
+        camera.setView(width, heigth);
+        LatencyHistogram draw_time = new LatencyHistogram(100_000_000L);
+
+        for (int level : LEVELS) {
+            InputRecording path = InputRecording.fromBytes(readAsset(test_context, "camera_paths/stage" + level + ".rec"));
+            stage.load(level);
+            for (MapRenderer.Type type : MapRenderer.Type.values()) {
+                MapRenderer renderer = type.create();
+                long load_start = System.nanoTime();
+                renderer.load(stage, width, heigth);
+                long load_nanos = System.nanoTime() - load_start;
+
+                sim.reset(stage.stage_grid, stage.player_start_x, stage.player_start_y, stage.player_velocity_x, PlayerState.IDLE);
+                camera.reset();
+                draw_time.reset();
+                long max_bytes = renderer.getBytes();
+                int next_input = 0;
+                while (!sim.player_dead && !sim.player_finished && sim.player_tick < path.end_tick) {
+                    for (int i = 0; i < STEPS_PER_FRAME; i++) {
+                        while (next_input < path.size() && path.getTick(next_input) <= sim.player_tick)
+                            sim.apply(path.getInput(next_input++));
+                        sim.update(PlayerSim.STEP_MS);
+                    }
+                    camera.followX(stage, sim.player_pos_x, sim.player_velocity_x);
+                    camera.followY(stage, sim.player_pos_y);
+
+                    long start = System.nanoTime();
+                    renderer.draw(c, camera, sim.player_velocity_x);
+                    draw_time.record(System.nanoTime() - start);
+                    max_bytes = Math.max(max_bytes, renderer.getBytes());
+                }
+                renderer.release();
+                assertTrue(type + " stage " + level + " did not finish", sim.player_finished);
+
+                Log.i(TAG, String.format("stage%-3d %-11s frames %5d  p50 %6.2f  p95 %6.2f  p99 %6.2f  max %6.2f ms  load %7.2f ms  %6d KB",
+                        level, type, draw_time.count(), draw_time.percentileMs(50), draw_time.percentileMs(95), draw_time.percentileMs(99),
+                        draw_time.maxMs(), load_nanos / 1e6f, max_bytes / 1024));
+            }
+        }
+        screen.recycle();
+    }
+
+    private static byte[] readAsset(Context context, String name) throws IOException {
+        InputStream in = context.getAssets().open(name);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[256];
+            int read;
+            while ((read = in.read(buffer)) != -1)
+                out.write(buffer, 0, read);
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
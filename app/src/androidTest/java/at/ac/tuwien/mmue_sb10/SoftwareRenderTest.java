@@ -0,0 +1,152 @@
+package at.ac.tuwien.mmue_sb10;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Draws fixed RenderSnapshots the way the software path of the GameThread does (GameState.draw() onto a bitmap backed canvas)
+ * and compares the pixels with the reference frames in the assets (render_reference/*.png).
+ * A missing reference fails the test. The frame is written to the external files directory of the app, so it can be pulled, checked and added to the assets.
+ * The frames are drawn with a fixed size and density, so the references do not depend on the device
+ * @since 1.1
+ * @author Lukas Lidauer
+ */
+@RunWith(AndroidJUnit4.class)
+public class SoftwareRenderTest {
+    private static final String TAG = SoftwareRenderTest.class.getSimpleName();
+    private static final int WIDTH = 1280;
+    private static final int HEIGTH = 720;
+    private static final float DENSITY = 2;
+    private static final int LEVEL = 1;
+
+    @Test
+    public void runningFrame() throws IOException {
+        RenderSnapshot s = snapshot();
+        s.deaths = 3;
+        compare("stage" + LEVEL + "_running", s);
+    }
+
+    @Test
+    public void pausedFrame() throws IOException {
+        RenderSnapshot s = snapshot();
+        s.paused = true;
+        s.fade_alpha = 200;
+        compare("stage" + LEVEL + "_paused", s);
+    }
+
+    /**
+     * @return Snapshot of a started stage with the player at the start position
+     */
+    private static RenderSnapshot snapshot() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        Stage stage = new Stage(context, DENSITY);
+        stage.load(LEVEL);
+        RenderSnapshot s = new RenderSnapshot();
+        s.stage_generation = 1; //the first stage loaded by the GameState
+        s.prev_pos_x = s.pos_x = stage.player_start_x;
+        s.prev_pos_y = s.pos_y = stage.player_start_y;
+        s.velocity_x = stage.player_velocity_x;
+        s.started = true;
+        s.start_circle_radius = 1;
+        stage.release();
+        return s;
+    }
+
+    /**
+     * Draws a snapshot with the default map renderer and compares it with its reference frame
+     * @param name Name of the reference frame
+     * @param s    Snapshot to draw
+     */
+    private static void compare(String name, RenderSnapshot s) throws IOException {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        Context test_context = InstrumentationRegistry.getInstrumentation().getContext();
+        SharedPreferences prefs = context.getSharedPreferences("escapePrefs", 0);
+        String map_renderer = prefs.getString("map_renderer", null);
+        prefs.edit().putString("map_renderer", MapRenderer.Type.RING_BUFFER.name()).commit();
+
+        Bitmap frame = Bitmap.createBitmap(WIDTH, HEIGTH, Bitmap.Config.ARGB_8888);
+        GameState state = new GameState(context, DENSITY, WIDTH, HEIGTH);
+        try {
+            state.load(LEVEL);
+            state.prepareDraw();
+            state.draw(new Canvas(frame), s, 1);
+        } finally {
+            state.release();
+            EscapeSoundManager.getInstance(context).releaseMediaPlayer();
+            prefs.edit().putString("map_renderer", map_renderer).commit();
+        }
+
+        Bitmap reference = readReference(test_context, name);
+        if (reference == null) {
+            File file = new File(context.getExternalFilesDir(null), name + ".png");
+            try (FileOutputStream out = new FileOutputStream(file)) {
+                frame.compress(Bitmap.CompressFormat.PNG, 100, out);
+            }
+            frame.recycle();
+            fail("No reference for " + name + ". The frame was written to " + file + ", check it and add it to app/src/androidTest/assets/render_reference/");
+            return;
+        }
+
+        assertEquals(name + " width", reference.getWidth(), frame.getWidth());
+        assertEquals(name + " heigth", reference.getHeight(), frame.getHeight());
+        int[] expected = new int[WIDTH * HEIGTH];
+        int[] actual = new int[WIDTH * HEIGTH];
+        reference.getPixels(expected, 0, WIDTH, 0, 0, WIDTH, HEIGTH);
+        frame.getPixels(actual, 0, WIDTH, 0, 0, WIDTH, HEIGTH);
+        reference.recycle();
+        frame.recycle();
+
+        int different = 0;
+        int first = -1;
+        for (int i = 0; i < actual.length; i++) {
+            if (actual[i] != expected[i]) {
+                if (first < 0)
+                    first = i;
+                different++;
+            }
+        }
+        if (different > 0)
+            Log.e(TAG, String.format("%s: first difference at %d,%d expected #%08x but was #%08x",
+                    name, first % WIDTH, first / WIDTH, expected[first], actual[first]));
+        assertEquals(name + " pixels different from the reference", 0, different);
+    }
+
+    /**
+     * @return Reference frame from the assets of the test, null if there is none
+     */
+    private static Bitmap readReference(Context context, String name) throws IOException {
+        InputStream in;
+        try {
+            in = context.getAssets().open("render_reference/" + name + ".png");
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+        try {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+            options.inScaled = false;
+            return BitmapFactory.decodeStream(in, null, options);
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package at.ac.tuwien.mmue_sb10;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+/**
+ * Draws the stage from one bitmap that holds all tiles put together (unscaled)
+ * @since 1.1
+ * @author Lukas Lidauer
+ */
+public class BakedMapRenderer implements MapRenderer {
+    private final boolean scale_canvas; //scales the canvas instead of the src/dst rectangles
+    private Stage stage;
+    private Bitmap stage_foreground; //stage tiles put together (unscaled)
+    private final Rect draw_src = new Rect(); //source rectangle for the region of the map to draw
+    private final RectF draw_tar = new RectF(); //target rectangle for the region of the map to draw
+
+    /**
+     * @param scale_canvas true to draw the unscaled bitmap onto a scaled canvas, false to blit the visible region with src/dst rectangles
+     */
+    public BakedMapRenderer(boolean scale_canvas) {
+        this.scale_canvas = scale_canvas;
+    }
+
+    @Override
+    public void load(Stage stage, int width, int heigth) {
+        release();
+        this.stage = stage;
+        this.stage_foreground = Bitmap.createBitmap(stage.width * 24, stage.heigth * 24, Bitmap.Config.ARGB_8888);
+        String key = stage.getForegroundKey();
+        if (!stage.foreground_cache.read(key, this.stage_foreground)) {
+            stage.drawRegion(new Canvas(this.stage_foreground), 0, 0, stage.width, stage.heigth);
+            stage.foreground_cache.write(key, stage.level, this.stage_foreground);
+        }
+    }
+
+    @Override
+    public void draw(Canvas c, Camera camera, float direction) {
+        if (this.scale_canvas) {
+            //new way of drawing by scaling the canvas and drawing the unscaled bitmap onto it
+            c.save();
+            c.scale(this.stage.stage_scale, this.stage.stage_scale);
+            c.drawBitmap(this.stage_foreground, -camera.trans_x_unscaled, -camera.trans_y_unscaled, null);
+            c.restore();
+        } else {
+            //old way of drawing by scaling the visible region of the bitmap
+            this.draw_src.set(
+                    (int) (camera.trans_x_unscaled),
+                    (int) (camera.trans_y_unscaled),
+                    (int) (camera.width / this.stage.stage_scale + camera.trans_x_unscaled),
+                    (int) (camera.heigth / this.stage.stage_scale + camera.trans_y_unscaled)
+            );
+            this.draw_tar.set(
+                    0,
+                    0,
+                    this.draw_src.width() * this.stage.stage_scale,
+                    this.draw_src.height() * this.stage.stage_scale
+            );
+            c.drawBitmap(this.stage_foreground, this.draw_src, this.draw_tar, null);
+        }
+    }
+
+    @Override
+    public long getBytes() {
+        return this.stage_foreground == null ? 0 : (long) this.stage_foreground.getRowBytes() * this.stage_foreground.getHeight();
+    }
+
+    @Override
+    public void release() {
+        if (this.stage_foreground != null)
+            this.stage_foreground.recycle();
+        this.stage_foreground = null;
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ * Position of the view on the stage
+ * @author Lukas Lidauer
+ */
+
+package at.ac.tuwien.mmue_sb10;
+
+import at.ac.tuwien.mmue_sb10.sim.PlayerSim;
+
+/**
+ * This class moves the view along with the player. The translation is kept in whole px so the map can be copied unscaled
+ * @since 1.1
+ * @author Lukas Lidauer & Jan König
+ */
+public class Camera {
+    public float trans_x = 0; //draw-translation on x axis
+    public float trans_y = 0; //draw-translation on y axis
+    public float trans_x_unscaled = 0; //draw-translation on x axis unscaled
+    public float trans_y_unscaled = 0; //draw-translation on y axis unscaled
+    public int width; //width of the view in px. independent of the resolution the view is rendered at
+    public int heigth; //heigth of the view in px. independent of the resolution the view is rendered at
+
+    /**
+     * Sets the size of the view
+     * @param width  Width of the view in px
+     * @param heigth Heigth of the view in px
+     * @since 1.1
+     */
+    public void setView(int width, int heigth) {
+        this.width = width;
+        this.heigth = heigth;
+    }
+
+    /**
+     * Moves the view back to the top left corner of the stage
+     * @since 1.1
+     */
+    public void reset() {
+        this.trans_x = 0;
+        this.trans_y = 0;
+        this.trans_x_unscaled = 0;
+        this.trans_y_unscaled = 0;
+    }
+
+    /**
+     * Translates the X drawing area to fit the current player position
+     *
+     * @param stage      Current stage
+     * @param player_x   Position x of the player (unscaled)
+     * @param velocity_x Horizontal velocity of the player
+     * @since 1.0
+     */
+    public void followX(Stage stage, float player_x, float velocity_x) {
+        if (velocity_x > 0) {
+            this.trans_x = player_x * stage.stage_scale - 96 * stage.stage_scale;
+        } else {
+            this.trans_x = player_x * stage.stage_scale - (this.width - 120 * stage.stage_scale);
+        }
+        if (this.trans_x < 0) this.trans_x = 0;
+        else if (this.trans_x > stage.width * 24 * stage.stage_scale - this.width)
+            this.trans_x = stage.width * 24 * stage.stage_scale - this.width;
+
+        this.trans_x = (float) Math.floor(this.trans_x); //whole px, so the map can be copied unscaled
+        this.trans_x_unscaled = this.trans_x / stage.stage_scale;
+    }
+
+    /**
+     * Translates the Y drawing area to fit the current player position
+     *
+     * @param stage    Current stage
+     * @param player_y Position y of the player (unscaled)
+     * @since 1.0
+     */
+    public void followY(Stage stage, float player_y) {
+        if (player_y * stage.stage_scale + PlayerSim.PLAYER_HEIGTH * stage.stage_scale > this.trans_y + this.heigth - (48 + PlayerSim.PLAYER_HEIGTH) * stage.stage_scale)
+            this.trans_y = player_y * stage.stage_scale + PlayerSim.PLAYER_HEIGTH * stage.stage_scale - this.heigth + (48 + PlayerSim.PLAYER_HEIGTH) * stage.stage_scale;
+        else if (player_y * stage.stage_scale < this.trans_y + 48 * stage.stage_scale)
+            this.trans_y = player_y * stage.stage_scale - 48 * stage.stage_scale;
+        if (this.trans_y < 0) this.trans_y = 0;
+        else if (this.trans_y > stage.heigth * 24 * stage.stage_scale - this.heigth)
+            this.trans_y = stage.heigth * 24 * stage.stage_scale - this.heigth;
+
+        this.trans_y = (float) Math.floor(this.trans_y); //whole px, so the map can be copied unscaled
+        this.trans_y_unscaled = this.trans_y / stage.stage_scale;
+    }
+}
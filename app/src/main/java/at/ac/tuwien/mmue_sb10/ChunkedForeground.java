@@ -0,0 +1,188 @@
+/**
+ * Draws the foreground of a stage from chunks that are put together when they come into view
+ * @author Lukas Lidauer
+ */
+
+package at.ac.tuwien.mmue_sb10;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class splits the foreground of a stage into chunks of CHUNK_TILES x CHUNK_TILES tiles.
+ * A chunk is composited when it becomes visible (or is about to) and kept in an LRU cache with a byte budget.
+ * Chunks that fall behind the camera are reused for the chunks ahead, so memory stays flat no matter how long the stage is
+ * @since 1.1
+ * @author Lukas Lidauer
+ */
+public class ChunkedForeground implements MapRenderer {
+    public static final int CHUNK_TILES = 16; //width and heigth of a chunk in tiles
+    private static final int CHUNK_PX = CHUNK_TILES * 24; //width and heigth of a chunk in px (unscaled)
+    private static final long CHUNK_BYTES = (long) CHUNK_PX * CHUNK_PX * 4; //memory of one ARGB_8888 chunk
+    private static final long MAX_BYTES = 8 * 1024 * 1024; //budget of all chunk bitmaps. visible chunks are kept even if they exceed it
+
+    private Stage stage;
+    private int columns; //number of chunks on the x axis
+    private int rows; //number of chunks on the y axis
+
+    private final LinkedHashMap<Integer, Bitmap> chunks = new LinkedHashMap<>(32, 0.75f, true); //composited chunks in access order. key is row * columns + column
+    private final ArrayList<Bitmap> free = new ArrayList<>(); //bitmaps of evicted chunks, reused for new chunks
+    private final Canvas chunk_canvas = new Canvas(); //used to composite chunks
+    private long bytes; //memory of all allocated chunk bitmaps (cached and free)
+
+    private int first_column, last_column, first_row, last_row; //visible chunks of the last frame
+
+    /**
+     * Prepares the foreground of a stage. No chunk is composited until it is drawn.
+     * Chunks of the previous stage are kept as free bitmaps
+     * @since 1.1
+     */
+    @Override
+    public void load(Stage stage, int width, int heigth) {
+        this.free.addAll(this.chunks.values());
+        this.chunks.clear();
+        this.stage = stage;
+        this.columns = (stage.width + CHUNK_TILES - 1) / CHUNK_TILES;
+        this.rows = (stage.heigth + CHUNK_TILES - 1) / CHUNK_TILES;
+    }
+
+    /**
+     * Draws the visible part of the foreground onto an unscaled canvas
+     * @since 1.1
+     */
+    @Override
+    public void draw(Canvas c, Camera camera, float direction) {
+        c.save();
+        c.scale(this.stage.stage_scale, this.stage.stage_scale);
+        draw(c, camera.trans_x_unscaled, camera.trans_y_unscaled, camera.width / this.stage.stage_scale, camera.heigth / this.stage.stage_scale, direction);
+        c.restore();
+    }
+
+    /**
+     * Draws the visible part of the foreground onto a canvas that is scaled by the stage scale.
+     * Also prepares one chunk ahead of the camera and evicts the chunks behind it
+     * @param c         Canvas to draw onto, scaled by stage_scale
+     * @param left      Left edge of the view in px (unscaled)
+     * @param top       Top edge of the view in px (unscaled)
+     * @param width     Width of the view in px (unscaled)
+     * @param heigth    Heigth of the view in px (unscaled)
+     * @param direction Horizontal direction the camera is moving in. Positive is right
+     * @since 1.1
+     */
+    public void draw(Canvas c, float left, float top, float width, float heigth, float direction) {
+        this.first_column = Math.max(0, (int) (left / CHUNK_PX));
+        this.last_column = Math.min(this.columns - 1, (int) ((left + width) / CHUNK_PX));
+        this.first_row = Math.max(0, (int) (top / CHUNK_PX));
+        this.last_row = Math.min(this.rows - 1, (int) ((top + heigth) / CHUNK_PX));
+
+        for (int row = this.first_row; row <= this.last_row; row++) {
+            for (int column = this.first_column; column <= this.last_column; column++) {
+                c.drawBitmap(getChunk(column, row), column * CHUNK_PX - left, row * CHUNK_PX - top, null);
+            }
+        }
+
+        //composite at most one chunk ahead per frame, so the cost is spread over several frames
+        int ahead = direction >= 0 ? this.last_column + 1 : this.first_column - 1;
+        if (ahead >= 0 && ahead < this.columns) {
+            for (int row = this.first_row; row <= this.last_row; row++) {
+                if (!this.chunks.containsKey(row * this.columns + ahead)) {
+                    getChunk(ahead, row);
+                    break;
+                }
+            }
+        }
+
+        evict();
+    }
+
+    /**
+     * Returns a chunk from the cache or composites it
+     */
+    private Bitmap getChunk(int column, int row) {
+        int key = row * this.columns + column;
+        Bitmap chunk = this.chunks.get(key);
+        if (chunk != null)
+            return chunk;
+
+        if (this.free.isEmpty()) {
+            chunk = Bitmap.createBitmap(CHUNK_PX, CHUNK_PX, Bitmap.Config.ARGB_8888);
+            this.bytes += CHUNK_BYTES;
+        } else {
+            chunk = this.free.remove(this.free.size() - 1);
+            chunk.eraseColor(Color.TRANSPARENT);
+        }
+        this.chunk_canvas.setBitmap(chunk);
+        this.chunk_canvas.save();
+        this.chunk_canvas.translate(-column * CHUNK_PX, -row * CHUNK_PX);
+        this.stage.drawRegion(this.chunk_canvas, column * CHUNK_TILES, row * CHUNK_TILES,
+                Math.min((column + 1) * CHUNK_TILES, this.stage.width), Math.min((row + 1) * CHUNK_TILES, this.stage.heigth));
+        this.chunk_canvas.restore();
+        this.chunk_canvas.setBitmap(null);
+        this.chunks.put(key, chunk);
+        return chunk;
+    }
+
+    /**
+     * Moves chunks that are more than one chunk away from the view into the free list and releases memory above the budget
+     */
+    private void evict() {
+        Iterator<Map.Entry<Integer, Bitmap>> it = this.chunks.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Integer, Bitmap> entry = it.next();
+            int column = entry.getKey() % this.columns;
+            int row = entry.getKey() / this.columns;
+            if (column < this.first_column - 1 || column > this.last_column + 1 || row < this.first_row - 1 || row > this.last_row + 1) {
+                this.free.add(entry.getValue());
+                it.remove();
+            }
+        }
+
+        while (this.bytes > MAX_BYTES && !this.free.isEmpty()) {
+            this.free.remove(this.free.size() - 1).recycle();
+            this.bytes -= CHUNK_BYTES;
+        }
+
+        //least recently used chunks first, visible chunks are never evicted
+        it = this.chunks.entrySet().iterator();
+        while (this.bytes > MAX_BYTES && it.hasNext()) {
+            Map.Entry<Integer, Bitmap> entry = it.next();
+            int column = entry.getKey() % this.columns;
+            int row = entry.getKey() / this.columns;
+            if (column < this.first_column || column > this.last_column || row < this.first_row || row > this.last_row) {
+                entry.getValue().recycle();
+                it.remove();
+                this.bytes -= CHUNK_BYTES;
+            }
+        }
+    }
+
+    /**
+     * @return Memory of all allocated chunk bitmaps in bytes
+     * @since 1.1
+     */
+    @Override
+    public long getBytes() {
+        return this.bytes;
+    }
+
+    /**
+     * Recycles all chunks. The foreground must not be drawn afterwards
+     * @since 1.1
+     */
+    @Override
+    public void release() {
+        for (Bitmap chunk : this.chunks.values())
+            chunk.recycle();
+        for (Bitmap chunk : this.free)
+            chunk.recycle();
+        this.chunks.clear();
+        this.free.clear();
+        this.bytes = 0;
+    }
+}
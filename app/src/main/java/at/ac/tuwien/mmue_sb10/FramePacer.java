@@ -0,0 +1,130 @@
+/**
+ * Paces the render loop of the GameThread to the vsync of the display
+ *
+ * @author Lukas Lidauer
+ */
+
+package at.ac.tuwien.mmue_sb10;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class lets the GameThread wait for the next frame instead of rendering as fast as possible.
+ * The vsync timestamps are taken from the Choreographer of the main thread, frames start on every n-th vsync depending on the target rate
+ * @since 1.1
+ * @author Lukas Lidauer
+ */
+public class FramePacer implements Choreographer.FrameCallback {
+    public static final int NATIVE = 0; //target rate that renders a frame on every vsync
+
+    private final Handler main_handler; //the Choreographer has to be used from a looper thread
+    private final float refresh_rate; //refresh rate of the display
+    private final long vsync_period; //time between two vsyncs in ns
+    private final long frame_period; //time between two frames in ns. a multiple of vsync_period
+
+    private volatile long last_vsync; //time of the last vsync in ns. 0 until the first vsync arrived
+    private volatile boolean active; //Choreographer callback keeps registering itself while active
+
+    private long frame_start; //planned start of the current frame
+    private long next_frame; //planned start of the next frame
+    private int frames; //number of rendered frames
+    private int missed; //number of frames that were not finished in time
+
+    /**
+     * Creates a new FramePacer
+     * @param refresh_rate Refresh rate of the display in Hz
+     * @param target_fps   Frames per second to render (30, 60, 90, 120) or NATIVE. Is rounded to a divisor of the refresh rate
+     * @since 1.1
+     */
+    public FramePacer(float refresh_rate, int target_fps) {
+        this.main_handler = new Handler(Looper.getMainLooper());
+        this.refresh_rate = refresh_rate > 0 ? refresh_rate : 60;
+        this.vsync_period = (long) (1_000_000_000L / this.refresh_rate);
+        int interval = target_fps <= NATIVE ? 1 : Math.max(1, Math.round(this.refresh_rate / target_fps));
+        this.frame_period = this.vsync_period * interval;
+    }
+
+    /**
+     * Starts listening to vsync. Can be called from any thread
+     * @since 1.1
+     */
+    public void start() {
+        this.active = true;
+        this.main_handler.post(() -> Choreographer.getInstance().postFrameCallback(this));
+    }
+
+    /**
+     * Stops listening to vsync. Can be called from any thread
+     * @since 1.1
+     */
+    public void stop() {
+        this.active = false;
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        this.last_vsync = frameTimeNanos;
+        if (this.active)
+            Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    /**
+     * Parks the calling thread until the next frame should start. If the last frame took too long, the next vsync is used instead
+     * @since 1.1
+     */
+    public void awaitFrame() {
+        long now = System.nanoTime();
+        long vsync = this.last_vsync;
+        if (this.next_frame == 0)
+            this.next_frame = now;
+        if (vsync != 0) {
+            //keep the frames on the vsync grid, the period of the display is only an estimate
+            this.next_frame = vsync + Math.round((double) (this.next_frame - vsync) / this.vsync_period) * this.vsync_period;
+            if (this.next_frame < now - this.vsync_period / 2)
+                this.next_frame = vsync + (now - vsync + this.vsync_period - 1) / this.vsync_period * this.vsync_period;
+        }
+
+        long remaining;
+        while ((remaining = this.next_frame - System.nanoTime()) > 0 && this.active)
+            LockSupport.parkNanos(remaining);
+
+        this.frame_start = this.next_frame;
+        this.next_frame += this.frame_period;
+    }
+
+    /**
+     * Counts the frame as missed if it was not posted within its period
+     * @since 1.1
+     */
+    public void frameDone() {
+        this.frames++;
+        if (System.nanoTime() > this.frame_start + this.frame_period)
+            this.missed++;
+    }
+
+    /**
+     * @return Time between two frames in ns
+     * @since 1.1
+     */
+    public long getFramePeriod() {
+        return this.frame_period;
+    }
+
+    /**
+     * @return Number of frames that were not finished in time
+     * @since 1.1
+     */
+    public int getMissedFrames() {
+        return this.missed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d frames at %.1f fps (display %.1f Hz), %d missed deadlines (%.1f%%)", this.frames, 1e9 / this.frame_period, this.refresh_rate,
+                this.missed, this.frames == 0 ? 0f : 100f * this.missed / this.frames);
+    }
+}
@@ -0,0 +1,169 @@
+/**
+ * Loads everything a game needs off the UI thread
+ * @author Lukas Lidauer
+ */
+
+package at.ac.tuwien.mmue_sb10;
+
+import android.app.Activity;
+import android.util.Log;
+
+import java.util.List;
+import java.util.concurrent.Future;
+
+import at.ac.tuwien.mmue_sb10.persistence.EscapeDatabase;
+import at.ac.tuwien.mmue_sb10.persistence.User;
+import at.ac.tuwien.mmue_sb10.util.Concurrency;
+
+/**
+ * This class loads a game in stages on the loader executor: the user is read from the database while the sprites, tiles and icons are decoded and sliced,
+ * then the stage is loaded and its music prepared, at last the map renderer composites the stage and the player atlas is rendered.
+ * Progress and the result are reported on the UI thread. A cancelled loader stops after the current stage and reports nothing anymore
+ * @since 1.1
+ * @author Lukas Lidauer
+ */
+public class GameLoader implements Runnable {
+    private static final String TAG = GameLoader.class.getSimpleName();
+    private static final float PROGRESS_DECODED = 0.5f; //GameState created
+    private static final float PROGRESS_STAGE = 0.8f; //stage loaded and music prepared
+    private static final float PROGRESS_DONE = 1f; //stage composited
+
+    /**
+     * Receives the progress of a GameLoader. All methods are called on the UI thread
+     * @since 1.1
+     */
+    public interface Listener {
+        /**
+         * @param progress Progress between 0 and 1
+         */
+        void onLoadProgress(float progress);
+
+        /**
+         * @param state GameState with the stage of the user loaded. Ready to be run by a GameThread
+         */
+        void onLoaded(GameState state);
+
+        /**
+         * The user has finished every stage or there is no user, no stage is loaded
+         */
+        void onAllStagesFinished();
+    }
+
+    private final Activity activity;
+    private final float density;
+    private final float screenWidth;
+    private final float screenHeight;
+    private final Listener listener;
+    private volatile boolean cancelled; //set from the UI thread
+    private Future<?> task;
+
+    /**
+     * Creates a new GameLoader. Nothing is loaded until start() is called
+     * @param activity     Activity of the game
+     * @param density      Pixel density of the screen
+     * @param screenWidth  Width of the screen in pixel
+     * @param screenHeight Heigth of the screen in pixel
+     * @param listener     Receives progress and result
+     * @since 1.1
+     */
+    public GameLoader(Activity activity, float density, float screenWidth, float screenHeight, Listener listener) {
+        this.activity = activity;
+        this.density = density;
+        this.screenWidth = screenWidth;
+        this.screenHeight = screenHeight;
+        this.listener = listener;
+    }
+
+    /**
+     * Starts loading on the loader executor
+     * @since 1.1
+     */
+    public void start() {
+        this.task = Concurrency.executeLoading(this);
+    }
+
+    /**
+     * Stops loading after the current stage. Afterwards the listener is not called anymore. Has to be called on the UI thread
+     * @since 1.1
+     */
+    public void cancel() {
+        this.cancelled = true;
+        if (this.task != null)
+            this.task.cancel(false);
+    }
+
+    /**
+     * Loads the game. If loading fails the error is logged and the game is left, so the loading bar does not stay on screen
+     */
+    @Override
+    public void run() {
+        GameState state = null;
+        try {
+            Future<User> user_future = Concurrency.submitAsync(this::loadUser);
+
+            state = new GameState(this.activity, this.density, this.screenWidth, this.screenHeight);
+            progress(PROGRESS_DECODED);
+            if (this.cancelled) {
+                state.release();
+                return;
+            }
+
+            User user = user_future.get();
+            if (user == null || user.currentLevel > HighscoreActivity.TOTAL_LEVELS) {
+                state.release();
+                post(this.listener::onAllStagesFinished);
+                return;
+            }
+
+            state.setUser(user);
+            if (this.cancelled) {
+                EscapeSoundManager.getInstance(this.activity).releaseMediaPlayer();
+                state.release();
+                return;
+            }
+            progress(PROGRESS_STAGE);
+
+            state.prepareDraw();
+            progress(PROGRESS_DONE);
+            GameState loaded = state;
+            this.activity.runOnUiThread(() -> {
+                if (this.cancelled)
+                    loaded.release();
+                else
+                    this.listener.onLoaded(loaded);
+            });
+        } catch (Throwable t) {
+            Log.e(TAG, "Could not load the game", t);
+            if (state != null)
+                state.release();
+            EscapeSoundManager.getInstance(this.activity).releaseMediaPlayer();
+            this.activity.runOnUiThread(this.activity::finish);
+        }
+    }
+
+    /**
+     * Reports the progress on the UI thread
+     */
+    private void progress(float progress) {
+        post(() -> this.listener.onLoadProgress(progress));
+    }
+
+    /**
+     * Runs a callback of the listener on the UI thread unless the loader has been cancelled in the meantime
+     */
+    private void post(Runnable callback) {
+        this.activity.runOnUiThread(() -> {
+            if (!this.cancelled)
+                callback.run();
+        });
+    }
+
+    /**
+     * Loads the current user from the database
+     * @return User or null, if it does not exist
+     */
+    private User loadUser() {
+        List<User> users = EscapeDatabase.getInstance(this.activity).userDao().selectAllUsers();
+        return users.size() > 0 ? users.get(0) : null;
+    }
+}
@@ -10,83 +10,80 @@ import android.app.Activity;
 import android.content.Context;
 import android.content.Intent;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.PorterDuff;
 import android.graphics.PorterDuffXfermode;
-import android.graphics.Rect;
 import android.graphics.RectF;
 import android.graphics.Typeface;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.MotionEvent;
 
 
 import androidx.core.app.ActivityOptionsCompat;
 import androidx.core.content.res.ResourcesCompat;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicReference;
 
 import at.ac.tuwien.mmue_sb10.persistence.EscapeDatabase;
 import at.ac.tuwien.mmue_sb10.persistence.Highscore;
+import at.ac.tuwien.mmue_sb10.persistence.ReplayStore;
 import at.ac.tuwien.mmue_sb10.persistence.User;
+import at.ac.tuwien.mmue_sb10.sim.InputRecording;
+import at.ac.tuwien.mmue_sb10.sim.PlayerSim;
+import at.ac.tuwien.mmue_sb10.sim.PlayerSimListener;
+import at.ac.tuwien.mmue_sb10.sim.PlayerState;
+import at.ac.tuwien.mmue_sb10.util.AnimationSet;
+import at.ac.tuwien.mmue_sb10.util.BitmapCache;
 import at.ac.tuwien.mmue_sb10.util.Concurrency;
+import at.ac.tuwien.mmue_sb10.util.InputQueue;
+import at.ac.tuwien.mmue_sb10.util.LatencyHistogram;
 
 /**
  * This class handles the current state of the game such as player position, velocity, current level, current player etc. This class also computes frame by frame updates and the like
  * @since 0.1
  * @author Lukas Lidauer & Jan König
  */
-public class GameState {
+public class GameState implements PlayerSimListener {
     public static final boolean SKIP_FINISH_SPLASH_SCREEN = false;
+    public static final boolean SHOW_LATENCY = false; //draws the input latency percentiles onto the HUD
 
-    private static final int PLAYER_WIDTH = 18; //player width in pixels
-    private static final int PLAYER_HEIGTH = 24; //player heigth in pixel (24 is maximum because of collision)
-    private static final float FRAME_TIME = 83f; //player animation. 83f is default for 12fps
+    private static final String TAG = GameState.class.getSimpleName();
+    private static final long LATENCY_RANGE_NANOS = 250_000_000L; //latencies are measured exactly up to 250ms
 
-    /*
-     * PLAYER: POSITION, VELOCITY, ACCELERATION
-     */
-    private float player_pos_x;
-    private float player_pos_y;
-    private float player_velocity_x;
-    private float player_boost_x;
-    private float player_velocity_y;
-    private float player_acceleration_y;
-
-    private float player_move_y;
-    private float player_move_x;
 
     /*
-     * PLAYER: STATE
+     * PLAYER
      */
-    private byte gravity; //gravity can either be regular or inverted (or top or bottom)
-    private boolean player_inAir; //player is in air?
-    private boolean player_onBoost; //player touches booster?
-    private boolean player_inInverter; //player touches inverter?
-    private boolean player_onJumper; //player touches jumper?
-    private boolean player_first_gravity_inAir; //player is allowed to do only one gravity change in the air until he hits the ground again. This variable keeps track of that.
-    private boolean player_dead; //player died
-    private boolean player_no_input; //game doesnt accept input for player until stage is finished. starts screen fade out
+    private PlayerSim sim; //physics of the player
+    private InputRecording recording; //inputs of the current attempt. null if the attempt has been saved
+    private float player_prev_pos_x; //player position x before the last simulation step. used for interpolation
+    private float player_prev_pos_y; //player position y before the last simulation step. used for interpolation
+    private float player_draw_x; //player position x interpolated between the last two simulation steps
+    private float player_draw_y; //player position y interpolated between the last two simulation steps
     private float current_fade_out_time; //current timer to fade out
+    private int fade_alpha; //alpha of the black overlay of the fadeout
 
-    private PlayerState player_state; //current state of the player. used for animations
-    private PlayerState player_last_state; //last state of player. used for animations
     private Bitmap[] player_frames; //all frames of the player animations
-    private float player_anim_time; //time counter used for animations
-    private int player_current_frame; //current frame of the player to be drawn
-    private Matrix player_draw_matrix; //transformation of player
-    private float player_draw_scale; //factor to scale the player bitmap
+    private AnimationSet player_animations; //animation clips of the player sprite sheet
+    private PlayerAnimator player_animator; //selects the frame of the player
+    private final PlayerAtlas player_atlas = new PlayerAtlas(); //player frames pre-scaled for the current stage
 
     /*
      * CURRENT STAGE
      */
     private Stage stage; //current stage
+    private final AtomicReference<Stage> retired_stage = new AtomicReference<>(); //stage replaced by a prefetched one. released once the map renderer has switched to the new stage
     public boolean finished; //stage is finished
     private boolean started; //stage is started
-    public boolean running; //game is running
+    public volatile boolean running; //game is running. set from the UI thread when the surface is destroyed
+    private long tick; //simulation steps since the GameState was created
+    private int stage_generation; //incremented when a stage is loaded
+    private int attempt; //incremented when the stage is retried
 
     /*
      * PAUSE MENU
@@ -108,26 +105,42 @@ public class GameState {
     private float screenWidth; //screen width of the smartphone in px
     private float screenHeight; //screen heigth of the smartphone in px
 
+    /*
+     * INPUT
+     */
+    private final InputQueue input_queue = new InputQueue(64); //inputs from the UI thread, applied by the GameThread before a simulation step
+    private final InputQueue.Command input_command = new InputQueue.Command(); //reused when polling input_queue
+    private final LatencyHistogram consume_latency = new LatencyHistogram(LATENCY_RANGE_NANOS); //time from a touch until it is applied
+    private final LatencyHistogram post_latency = new LatencyHistogram(LATENCY_RANGE_NANOS); //time from a touch until the frame showing it is posted
+    private final long[] pending_event_times = new long[16]; //event times of applied touches that are not shown yet
+    private int pending_events; //number of used pending_event_times
+    private long pending_first_event; //sequence number of pending_event_times[0]. touches are numbered in the order they are applied
+    private volatile long posted_events; //sequence number of the first touch no posted frame has shown yet. only written by the thread that draws
+    private String latency_text; //text of the latency overlay. only rebuilt when new latencies are recorded
+    private int latency_text_count = -1; //number of latencies latency_text was built with
+
     /*
      * DRAW
      */
     private float density; //density of the smartphone screen
-    private float trans_x = 0; //draw-translation on x axis
-    private float trans_y = 0; //draw-translation on y axis
-    private float trans_x_unscaled = 0; //draw-translation on x axis unscaled
-    private float trans_y_unscaled = 0; //draw-translation on y axis unscaled
-    private Rect draw_src; //source rectangle for the region of the map to draw
-    private RectF draw_tar; //target rectangle on the screen (full screen)
+    private final Camera camera = new Camera(); //draw-translation of the view
+    private MapRenderer map_renderer; //draws the tiles and the background
+    private final MapRenderer.Type map_renderer_type; //type of map_renderer
+    private int drawn_stage_generation; //stage the map renderer and the start circle are prepared for
+    private int drawn_attempt; //attempt the camera was reset for
     private float start_circle_radius; //interpolates between 0 and 1
     private Bitmap start_circle_bmp; //bitmap for the expanding circle at the start
     private Canvas start_circle_canvas; //canvas to draw on start_circle_bmp
-    private boolean player_invisible; //draw player or not
     private Bitmap death_counter_icon; //icon for the death counter
     private Bitmap icon_mute; //icon for the mute button
     private Bitmap icon_sound; //icon for the unmute button
     private Bitmap icon_pause; //icon for the pause button
     private Bitmap icon_control_jump; //icon showing the jump region
     private Bitmap icon_control_gravity; //icon showing the gravity region
+    private HudLayer pause_layer; //cached pause screen. rendered again if the mute state changes
+    private HudLayer death_counter_layer; //cached death counter. rendered again if the deaths change
+    private GlyphAtlas text_glyphs; //glyphs of text_paint for the messages and the stage name
+    private GlyphAtlas death_counter_glyphs; //glyphs of death_counter_paint
 
     /*
      * PAINT
@@ -140,22 +153,19 @@ public class GameState {
     private Paint pause_paint; //paint for drawing the pause message
     private Paint controls_header_paint; //paint for drawing the header of the controls
     private Paint controls_text_paint; //paint for drawing the controls explanation
-    private Paint mapPaint; //used for efficient drawing map
+    private Paint latency_paint; //paint for the latency overlay
 
     /*
      * STRINGS
      */
     private String you_died_retry; //message to display when player died
     private String finished_next_level; //message to display when level is finished
-
-    /*
-     * COLLISION
-     */
-    private RectF player_collision_px; //contains player corner coordinates in px after next step
-    private Rect player_collision_tiles; //contains player corner coordinates in tiles after next step
-    private int[] collision_corners; //0=TopLeft, 1=TopRight, 2=BottomRight, 3=BottomLeft
-    private float col_time_x; //collision time on x-axis
-    private float col_time_y; //collision time on y-axis
+    private String pause_game; //header of the pause screen
+    private String continue_game; //text of the continue button
+    private String back_to_main; //text of the exit button
+    private String controls; //header of the controls
+    private String[] control_gravity_lines; //lines explaining the gravity control
+    private String[] control_jump_lines; //lines explaining the jump control
 
     /**
      * Creates a new GameState instance
@@ -173,9 +183,7 @@ public class GameState {
         this.screenWidth = screenWidth;
         this.screenHeight = screenHeight;
 
-        this.player_collision_px = new RectF();
-        this.player_collision_tiles = new Rect();
-        this.collision_corners = new int[4];
+        this.sim = new PlayerSim(this);
 
         loadPlayerFrames();
         loadDeathCounter();
@@ -213,9 +221,6 @@ public class GameState {
         this.trans_paint = new Paint();
         this.trans_paint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.CLEAR));
 
-        this.mapPaint = new Paint();
-        this.mapPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC_OVER));
-
         this.button_paint = new Paint();
         this.button_paint.setColor(this.context.getResources().getColor(R.color.android_gray));
 
@@ -231,14 +236,25 @@ public class GameState {
         this.death_counter_paint.setTypeface(font_joystix);
         this.death_counter_paint.setTextSize(this.death_counter_icon.getHeight() * 0.65f);
 
+        this.latency_paint = new Paint();
+        this.latency_paint.setColor(Color.WHITE);
+        this.latency_paint.setTextSize(12 * this.density);
+
         this.you_died_retry = context.getResources().getString(R.string.player_died);
         this.finished_next_level = context.getResources().getString(R.string.splashscreen_executedrun);
+        this.pause_game = context.getResources().getString(R.string.pause_game);
+        this.continue_game = context.getResources().getString(R.string.continue_game);
+        this.back_to_main = context.getResources().getString(R.string.backtomain);
+        this.controls = context.getResources().getString(R.string.controls);
+        this.control_gravity_lines = context.getResources().getString(R.string.control_gravity).split("\n");
+        this.control_jump_lines = context.getResources().getString(R.string.control_jump).split("\n");
 
         this.start_circle_bmp = Bitmap.createBitmap((int) (this.screenWidth), (int) this.screenHeight, Bitmap.Config.ARGB_8888);
         this.start_circle_canvas = new Canvas(this.start_circle_bmp);
 
-        this.draw_src = new Rect();
-        this.draw_tar = new RectF();
+        this.camera.setView((int) this.screenWidth, (int) this.screenHeight);
+        this.map_renderer_type = readMapRenderer();
+        this.map_renderer = this.map_renderer_type.create();
 
         this.mute_pause_touch_zone = new RectF(16 * this.density, 16 * this.density, 66 * this.density, 66 * this.density);
         this.controls_zone = new RectF(this.screenWidth - 0.3f * this.screenWidth, 0, this.screenWidth, this.screenHeight);
@@ -247,33 +263,44 @@ public class GameState {
         loadMuteIcons();
         loadPauseIcon();
 
-        this.player_state = PlayerState.IDLE;
-        this.player_anim_time = 0;
-        this.player_draw_matrix = new Matrix();
-        this.player_draw_scale = (float) PLAYER_WIDTH / this.player_frames[0].getWidth();
+        this.text_glyphs = new GlyphAtlas(this.text_paint, this.you_died_retry + this.finished_next_level + GlyphAtlas.DIGITS);
+        this.death_counter_glyphs = new GlyphAtlas(this.death_counter_paint, GlyphAtlas.DIGITS + "of");
+        this.pause_layer = new HudLayer((int) this.screenWidth, (int) this.screenHeight);
+        this.death_counter_layer = new HudLayer((int) (38 * this.density + this.death_counter_glyphs.measure(3) + 4 * this.density),
+                (int) (this.death_counter_icon.getHeight() + 8 * this.density));
 
         this.running = false;
         EscapeSoundManager.getInstance(this.context).unlock();
     }
 
     /**
-     * Loads the player frames from the sprite sheet into the player_frames array
+     * Reads the strategy used to draw the map from the preferences. Unknown values fall back to RING_BUFFER
+     * @return Strategy to draw the map with
+     * @since 1.1
+     */
+    private MapRenderer.Type readMapRenderer() {
+        String name = this.context.getSharedPreferences("escapePrefs", 0).getString("map_renderer", MapRenderer.Type.RING_BUFFER.name());
+        try {
+            return MapRenderer.Type.valueOf(name);
+        } catch (IllegalArgumentException | NullPointerException e) {
+            Log.w(TAG, "Unknown map renderer " + name);
+            return MapRenderer.Type.RING_BUFFER;
+        }
+    }
+
+    /**
+     * Loads the player frames from the sprite sheet into the player_frames array and the animation clips from hero_anim.txt
      * @since 1.0
      */
     private void loadPlayerFrames() {
-        BitmapFactory.Options o = new BitmapFactory.Options();
-        o.inScaled = false;
-        Bitmap player_sheet = BitmapFactory.decodeResource(context.getResources(), R.drawable.hero_sheet, o);
-        int h = player_sheet.getWidth() / 13;
-        int v = player_sheet.getHeight() / 17;
-        this.player_frames = new Bitmap[h * v];
-        int framenumber = 0;
-        for (int y = 0; y < v; y++) {
-            for (int x = 0; x < h; x++) {
-                this.player_frames[framenumber] = Bitmap.createBitmap(player_sheet, x * 13, y * 17, 13, 17);
-                framenumber++;
-            }
+        try {
+            this.player_animations = AnimationSet.read(context.getAssets().open("hero_anim.txt"));
+        } catch (IOException e) {
+            throw new IllegalStateException("Animations of the player can not be read", e);
         }
+        this.player_animator = new PlayerAnimator(this.player_animations);
+
+        this.player_frames = BitmapCache.getInstance(this.context).acquireFrames(R.drawable.hero_sheet, 13, 17, false);
     }
 
     /**
@@ -281,12 +308,7 @@ public class GameState {
      * @since 1.0
      */
     private void loadDeathCounter() {
-        BitmapFactory.Options o = new BitmapFactory.Options();
-        o.inScaled = false;
-        Bitmap temp_death = BitmapFactory.decodeResource(context.getResources(), R.drawable.life_counter, o);
-        this.death_counter_icon = Bitmap.createScaledBitmap(
-                temp_death, (int) (temp_death.getWidth() * 0.5f * this.density), (int) (temp_death.getHeight() * 0.5f * this.density), true
-        );
+        this.death_counter_icon = BitmapCache.getInstance(this.context).acquire(R.drawable.life_counter, 0.5f * this.density, true);
     }
 
     /**
@@ -294,16 +316,9 @@ public class GameState {
      * @since 1.0
      */
     private void loadMuteIcons() {
-        BitmapFactory.Options o = new BitmapFactory.Options();
-        o.inScaled = false;
-        Bitmap temp_mute = BitmapFactory.decodeResource(context.getResources(), R.drawable.icon_mute, o);
-        this.icon_mute = Bitmap.createScaledBitmap(
-                temp_mute, (int) (this.mute_pause_touch_zone.width()), (int) (mute_pause_touch_zone.height()), true
-        );
-        temp_mute = BitmapFactory.decodeResource(context.getResources(), R.drawable.icon_sound, o);
-        this.icon_sound = Bitmap.createScaledBitmap(
-                temp_mute, (int) (this.mute_pause_touch_zone.width()), (int) (mute_pause_touch_zone.height()), true
-        );
+        BitmapCache cache = BitmapCache.getInstance(this.context);
+        this.icon_mute = cache.acquire(R.drawable.icon_mute, (int) this.mute_pause_touch_zone.width(), (int) this.mute_pause_touch_zone.height(), true);
+        this.icon_sound = cache.acquire(R.drawable.icon_sound, (int) this.mute_pause_touch_zone.width(), (int) this.mute_pause_touch_zone.height(), true);
     }
 
     /**
@@ -311,12 +326,7 @@ public class GameState {
      * @since 1.0
      */
     private void loadPauseIcon() {
-        BitmapFactory.Options o = new BitmapFactory.Options();
-        o.inScaled = false;
-        Bitmap temp_pause = BitmapFactory.decodeResource(context.getResources(), R.drawable.icon_pause, o);
-        this.icon_pause = Bitmap.createScaledBitmap(
-                temp_pause, (int) (this.mute_pause_touch_zone.width()), (int) (mute_pause_touch_zone.height()), true
-        );
+        this.icon_pause = BitmapCache.getInstance(this.context).acquire(R.drawable.icon_pause, (int) this.mute_pause_touch_zone.width(), (int) this.mute_pause_touch_zone.height(), true);
     }
 
     /**
@@ -324,556 +334,334 @@ public class GameState {
      * @since 1.0
      */
     private void loadControlIcons() {
-        BitmapFactory.Options o = new BitmapFactory.Options();
-        o.inScaled = false;
-        Bitmap temp_jumpgravity = BitmapFactory.decodeResource(context.getResources(), R.drawable.phone_gravity, o);
-        this.icon_control_jump = Bitmap.createScaledBitmap(
-                temp_jumpgravity, (int) (temp_jumpgravity.getWidth() * 1.75f * this.density), (int) (temp_jumpgravity.getHeight() * 1.75f * this.density), false
-        );
-        temp_jumpgravity = BitmapFactory.decodeResource(context.getResources(), R.drawable.phone_jump, o);
-        this.icon_control_gravity = Bitmap.createScaledBitmap(
-                temp_jumpgravity, (int) (temp_jumpgravity.getWidth() * 1.75f * this.density), (int) (temp_jumpgravity.getHeight() * 1.75f * this.density), false
-        );
+        BitmapCache cache = BitmapCache.getInstance(this.context);
+        this.icon_control_jump = cache.acquire(R.drawable.phone_gravity, 1.75f * this.density, false);
+        this.icon_control_gravity = cache.acquire(R.drawable.phone_jump, 1.75f * this.density, false);
     }
 
     /**
      * Updates the state of the game depending on the deltaFrameTime. Handles collision detection, gravity, movement, ...
+     * Is called by the GameThread with a fixed step length, so the physics behave the same regardless of the frame rate
      *
-     * @param deltaFrameTime The passed time since the last updated frame.
+     * @param deltaFrameTime The length of the simulation step in ms
      * @since 0.1
      */
-    public void update(long deltaFrameTime) {
-        if (this.player_dead || this.finished || !this.started) {
+    public void update(float deltaFrameTime) {
+        this.player_prev_pos_x = this.sim.player_pos_x;
+        this.player_prev_pos_y = this.sim.player_pos_y;
+        this.tick++;
+
+        updateSimulation(deltaFrameTime);
+        this.player_animator.update(this.sim, deltaFrameTime);
+        updateFadeout(deltaFrameTime);
+    }
+
+    /**
+     * Advances the physics of the player unless the game is paused or over
+     *
+     * @param deltaFrameTime The length of the simulation step in ms
+     * @since 1.1
+     */
+    private void updateSimulation(float deltaFrameTime) {
+        if (this.sim.player_dead || this.finished || !this.started) {
             //Game over. Proceed to next stage or retry
             return;
         } else if (this.start_circle_radius < 1) {
             //Black circle at start of level is expanding. After 1 second the screen is fully visible
-            this.start_circle_radius += (float) deltaFrameTime / 1000;
+            this.start_circle_radius += deltaFrameTime / 1000;
             return;
         } else if (this.paused) {
             return;
         }
 
-        this.player_velocity_y += ((float) deltaFrameTime / 1000) * this.player_acceleration_y * this.gravity;
-        this.player_move_y = Math.min(this.player_velocity_y * ((float) deltaFrameTime / 1000), 12);
-        this.player_move_x = Math.min( this.player_velocity_x * this.player_boost_x * ((float) deltaFrameTime / 1000), 23);
-
-        //Player position after this deltatime-step
-        this.player_collision_px.set(this.player_pos_x + this.player_move_x, this.player_pos_y + this.player_move_y, this.player_pos_x + this.player_move_x + PLAYER_WIDTH, this.player_pos_y + this.player_move_y + PLAYER_HEIGTH);
-        this.player_collision_tiles.set((int) (this.player_collision_px.left / 24), (int) (this.player_collision_px.top / 24), (int) (this.player_collision_px.right / 24), (int) (this.player_collision_px.bottom / 24));
-
-        if (this.player_collision_tiles.left >= 0 && this.player_collision_tiles.top >= 0 && this.player_collision_tiles.right < this.stage.stage_collision.length && this.player_collision_tiles.bottom < this.stage.stage_collision[0].length) {
-            //Player is inside bounds => CHECK COLLISION!
-            this.collision_corners[0] = this.stage.stage_collision[this.player_collision_tiles.left][this.player_collision_tiles.top]; //TopLeft
-            this.collision_corners[1] = this.stage.stage_collision[this.player_collision_tiles.right][this.player_collision_tiles.top]; //TopRight
-            this.collision_corners[2] = this.stage.stage_collision[this.player_collision_tiles.right][this.player_collision_tiles.bottom]; //BottomRight
-            this.collision_corners[3] = this.stage.stage_collision[this.player_collision_tiles.left][this.player_collision_tiles.bottom]; //BottomLeft
-            if (this.collision_corners[0] != 0 || this.collision_corners[1] != 0 || this.collision_corners[2] != 0 || this.collision_corners[3] != 0) {
-                //At least one of the player corners collides with a tile with behavior (solid, die, ...)
-                if ((this.collision_corners[0] == 1 && this.collision_corners[1] == 1) || (this.collision_corners[2] == 1 && this.collision_corners[3] == 1)) {
-                    //Y Solid Collision => Position adjustment
-                    adjustPositionY();
-                    //X Collision can still happen
-                    checkCollisionX();
-                    if (this.player_onBoost)
-                        this.player_onBoost = false;
-                    if (this.player_onJumper)
-                        this.player_onJumper = false;
-                } else if ((this.collision_corners[0] == 4 && this.collision_corners[1] == 4) || (this.collision_corners[2] == 4 && this.collision_corners[3] == 4)) {
-                    adjustPositionY();
-                    checkCollisionX();
-                    boostPlayerRight();
-                } else if ((this.collision_corners[0] == 5 && this.collision_corners[1] == 5) || (this.collision_corners[2] == 5 && this.collision_corners[3] == 5)) {
-                    adjustPositionY();
-                    checkCollisionX();
-                    boostPlayerLeft();
-                } else if ((this.collision_corners[0] == 8 && this.collision_corners[1] == 8) || (this.collision_corners[2] == 8 && this.collision_corners[3] == 8)) {
-                    adjustPositionY();
-                    if (!this.player_onJumper)
-                        this.player_onJumper = true;
-                } else if ((collision_corners[0] != 0 && collision_corners[3] != 0) || (collision_corners[1] != 0 && collision_corners[2] != 0)) {
-                    //X Collision
-                    checkCollisionX();
-                } else {
-                    //Only one corner collided, can be either X or Y first
-                    calcCollisionTimeX();
-                    calcCollisionTimeY();
-                    if (this.col_time_y < 0 && this.col_time_x > 0) {
-                        //no valid collision on Y, collision on X
-                        killPlayer();
-                        this.player_pos_y = this.player_collision_px.top;
-                    } else {
-                        //Y before X => Y Solid Collosion => Position adjustment
-                        adjustPositionY();
-                        if (collision_corners[0] == 4 || collision_corners[3] == 4 || collision_corners[1] == 4 || collision_corners[2] == 4) {
-                            boostPlayerRight();
-                        } else if (collision_corners[0] == 5 || collision_corners[3] == 5 || collision_corners[1] == 5 || collision_corners[2] == 5) {
-                            boostPlayerLeft();
-                        } else if (collision_corners[0] == 8 || collision_corners[3] == 8 || collision_corners[1] == 8 || collision_corners[2] == 8) {
-                            if (!this.player_onJumper)
-                                this.player_onJumper = true;
-                        } else {
-                            if (this.player_onBoost)
-                                this.player_onBoost = false;
-                            if (this.player_onJumper)
-                                this.player_onJumper = false;
-                        }
-                    }
-                }
-
-                if (collision_corners[0] == 3 || collision_corners[1] == 3 || collision_corners[2] == 3 || collision_corners[3] == 3) {
-                    //X Inverter Collision
-                    if (!this.player_inInverter) {
-                        this.player_velocity_x *= -1;
-                        this.player_inInverter = true;
-                    }
-                    this.player_pos_y = this.player_collision_px.top;
-                } else if (collision_corners[0] == 6 || collision_corners[1] == 6 || collision_corners[2] == 6 || collision_corners[3] == 6) {
-                    //X Finish Collision
-                    finishStage();
-                    this.player_pos_y = this.player_collision_px.top;
-                } else if (collision_corners[0] == 7 || collision_corners[1] == 7 || collision_corners[2] == 7 || collision_corners[3] == 7) {
-                    //X Collision with no-input tile
-                    //happens before finish line for running out of screen effect
-                    setNoPlayerInput();
-                    this.player_pos_y = this.player_collision_px.top;
-                } else if (collision_corners[0] == 2 || collision_corners[1] == 2 || collision_corners[2] == 2 || collision_corners[3] == 2) {
-                    //X Death Collision (spikes)
-                    killPlayer();
-                    this.player_pos_y = this.player_collision_px.top;
-                } else {
-                    if (this.player_inInverter)
-                        this.player_inInverter = false;
-                }
-
-                if (this.player_inAir)
-                    this.player_inAir = false;
-                if (this.player_first_gravity_inAir)
-                    this.player_first_gravity_inAir = false;
-            } else {
-                //None of the player corners collides with anything
-                this.player_pos_y = this.player_collision_px.top;
-                if (!this.player_inAir)
-                    this.player_inAir = true;
-                if (this.player_onBoost)
-                    this.player_onBoost = false;
-                if (this.player_onJumper)
-                    this.player_onJumper = false;
-
-                EscapeSoundManager.getInstance(this.context).stopSoundLoop();
-            }
-            this.player_pos_x = this.player_collision_px.left;
-        } else {
-            //Player is out of bounds => DIE!
-            killPlayer();
-            this.player_pos_x = this.player_collision_px.left;
-            this.player_pos_y = this.player_collision_px.top;
-        }
+        this.sim.update(deltaFrameTime);
+        if (this.sim.player_dead || this.sim.player_finished)
+            saveRecording();
     }
 
     /**
-     * Boosts the player speed by a factor of 1.5 if going right, otherwise slows down by factor of 0.66
-     * Only works once per boost platform
+     * Advances the fadeout of the pause screen, death screen and the end of a stage
      *
-     * @since 0.1
+     * @param deltaFrameTime The length of the simulation step in ms
+     * @since 1.1
      */
-    private void boostPlayerRight() {
-        if (this.player_velocity_x > 0 && !this.player_onBoost) {
-            this.player_boost_x *= 1.5;
-            this.player_onBoost = true;
-        } else if (this.player_velocity_x < 0 && !this.player_onBoost) {
-            this.player_boost_x *= (2f / 3);
-            this.player_onBoost = true;
-        }
-    }
+    private void updateFadeout(float deltaFrameTime) {
+        this.fade_alpha = 0;
+        if (this.paused)
+            updateFadeout(deltaFrameTime, 200, 128, 0);
 
-    /**
-     * Boosts the player speed by a factor of 1.5 if going left, otherwise slows down by factor of 0.66
-     * Only works once per boost platform
-     *
-     * @since 0.1
-     */
-    private void boostPlayerLeft() {
-        if (this.player_velocity_x < 0 && !this.player_onBoost) {
-            this.player_boost_x *= 1.5;
-            this.player_onBoost = true;
-        } else if (this.player_velocity_x > 0 && !this.player_onBoost) {
-            this.player_boost_x *= (2f / 3);
-            this.player_onBoost = true;
+        if (this.sim.player_dead) {
+            updateFadeout(deltaFrameTime, 1000, 255, 300);
+        } else if (this.finished) {
+            updateFadeout(deltaFrameTime, 2500, 255, 0);
+        } else if (this.start_circle_radius < 1) {
+            //no fadeout while the circle at the start is expanding
+        } else if (this.sim.player_no_input) {
+            updateFadeout(deltaFrameTime, 2500, 255, 0);
+            EscapeSoundManager.getInstance(this.context).fadeSoundLoop(this.current_fade_out_time, 3500, 0f);
         }
     }
 
     /**
-     * When player object collides with tiles on Y axis (basically when it is walking on the ground), adjust Y position to be exactly
+     * Advances the timer of the fadeout and computes the alpha of the overlay
      *
-     * @since 0.1
+     * @param deltaFrameTime The length of the simulation step in ms
+     * @param fade_out_time  Time in ms for the screen to fully turn black
+     * @param max_alpha      Maximum alpha for the fadeout effect
+     * @param wait_time      Time in ms to wait before starting the fadeout effect
+     * @since 1.0
      */
-    private void adjustPositionY() {
-        if (this.player_velocity_y > 0)
-            this.player_pos_y = this.player_collision_px.bottom - this.player_collision_px.bottom % 24 - PLAYER_HEIGTH;
-        else
-            this.player_pos_y = this.player_collision_px.top + (24 - this.player_collision_px.top % 24);
-
-        this.player_velocity_y = 0;
-
-        this.player_last_state = this.player_state;
-        this.player_state = PlayerState.RUNNING;
-
-        EscapeSoundManager.getInstance(this.context).playSoundLoop(EscapeSoundManager.getInstance(this.context).snd_steps);
+    private void updateFadeout(float deltaFrameTime, int fade_out_time, int max_alpha, int wait_time) {
+        this.current_fade_out_time += deltaFrameTime;
+        if (this.current_fade_out_time > wait_time)
+            this.fade_alpha = Math.min((int) (((this.current_fade_out_time - wait_time) / fade_out_time) * max_alpha), max_alpha);
     }
 
     /**
-     * When player object collides with a wall horizontally, player dies
+     * Copies the visible state of the game into a snapshot. Called after the simulation steps of a frame,
+     * in two-thread mode after every step by the SimulationThread
      *
-     * @since 0.1
+     * @param s Snapshot to fill
+     * @since 1.1
      */
-    private void checkCollisionX() {
-        if ((this.collision_corners[0] == 1 && this.collision_corners[3] == 1) || (this.collision_corners[1] == 1 && this.collision_corners[2] == 1)) {
-            killPlayer();
-            this.player_pos_x = this.player_collision_px.left;
-            this.player_pos_y = this.player_collision_px.top;
+    public void snapshot(RenderSnapshot s) {
+        s.tick = this.tick;
+        s.time = System.nanoTime();
+        s.stage_generation = this.stage_generation;
+        s.attempt = this.attempt;
+
+        s.prev_pos_x = this.player_prev_pos_x;
+        s.prev_pos_y = this.player_prev_pos_y;
+        s.pos_x = this.sim.player_pos_x;
+        s.pos_y = this.sim.player_pos_y;
+        s.velocity_x = this.sim.player_velocity_x;
+        s.player_frame = this.player_animator.frame;
+        s.player_flip = this.player_animator.flip;
+        s.player_invisible = this.player_animator.invisible;
+
+        s.started = this.started;
+        s.paused = this.paused;
+        s.finished = this.finished;
+        s.player_dead = this.sim.player_dead;
+        s.player_no_input = this.sim.player_no_input;
+        s.muted = EscapeSoundManager.getInstance(this.context).isMuted();
+        s.start_circle_radius = this.start_circle_radius;
+        s.fade_alpha = this.fade_alpha;
+        s.deaths = this.user.deathsCurrentLevel;
+
+        //touches stay pending until a posted frame has shown them, so they are not lost if this snapshot is replaced before it is drawn
+        int posted = (int) Math.min(this.posted_events - this.pending_first_event, this.pending_events);
+        if (posted > 0) {
+            this.pending_events -= posted;
+            System.arraycopy(this.pending_event_times, posted, this.pending_event_times, 0, this.pending_events);
+            this.pending_first_event += posted;
         }
+        System.arraycopy(this.pending_event_times, 0, s.event_times, 0, this.pending_events);
+        s.events = this.pending_events;
+        s.first_event = this.pending_first_event;
     }
 
     /**
-     * Calculates the exact time it took the player object to collide with the tile object on x axis
-     * Player object might overlap the collided object, this calculates exact time it takes to collide without overlap
+     * Draws a snapshot of the game onto c. Only reads the snapshot and state that belongs to drawing (camera, map renderer, start circle),
+     * so it can run on another thread than the simulation.
+     * If the surface is smaller than the view because of a lower render resolution, the canvas is scaled so everything is drawn in view coordinates.
+     * That way touch zones like mute_pause_touch_zone stay mapped to what is drawn
      *
+     * @param c     The Canvas that is drawn onto
+     * @param s     Snapshot to draw
+     * @param alpha Progress between the last and the next simulation step (0 to 1). Used to interpolate the player position
      * @since 0.1
      */
-    private void calcCollisionTimeX() {
-        if (this.player_velocity_x < 0)
-            this.col_time_x = (this.player_collision_tiles.right * 24 - this.player_pos_x) / (this.player_velocity_x * this.player_boost_x);
-        else
-            this.col_time_x = (this.player_collision_tiles.left * 24 + (24 - PLAYER_WIDTH) - this.player_pos_x) / (this.player_velocity_x * this.player_boost_x); //TODO: (24 - PLAYER_WIDTH) only works with PLAYER_WIDTH < 24
-    }
-
-    /**
-     * Calculates the exact time it took the player object to collide with the tile object on y axis
-     * Player object might overlap the collided object, this calculates exact time it takes to collide without overlap
-     *
-     * @since 0.1
-     */
-    private void calcCollisionTimeY() {
-        if (this.player_velocity_y < 0)
-            this.col_time_y = (this.player_collision_tiles.bottom * 24 - this.player_pos_y) / this.player_velocity_y;
-        else
-            this.col_time_y = (this.player_collision_tiles.top * 24 - this.player_pos_y) / this.player_velocity_y;
-    }
+    public void draw(Canvas c, RenderSnapshot s, float alpha) {
+        this.player_draw_x = s.prev_pos_x + (s.pos_x - s.prev_pos_x) * alpha;
+        this.player_draw_y = s.prev_pos_y + (s.pos_y - s.prev_pos_y) * alpha;
+
+        if (s.stage_generation != this.drawn_stage_generation)
+            prepareStage(s.stage_generation);
+        if (s.attempt != this.drawn_attempt) {
+            this.drawn_attempt = s.attempt;
+            this.camera.reset();
+        }
 
-    /**
-     * Draws the current state of the game onto c
-     *
-     * @param c              The Canvas that is drawn onto
-     * @param deltaFrameTime The passed time since the last frame
-     * @since 0.1
-     */
-    public void draw(Canvas c, float deltaFrameTime) {
-        if (!this.player_no_input) {
-            translateX(c);
-            translateY(c);
+        if (!s.player_no_input) {
+            this.camera.followX(this.stage, this.player_draw_x, s.velocity_x);
+            this.camera.followY(this.stage, this.player_draw_y);
         }
 
-        drawMap(c);
+        c.save();
+        if (c.getWidth() != (int) this.screenWidth || c.getHeight() != (int) this.screenHeight)
+            c.scale(c.getWidth() / this.screenWidth, c.getHeight() / this.screenHeight);
 
-        if (!this.player_invisible)
-            drawPlayer(c, deltaFrameTime);
+        drawMap(c, s);
 
-        drawHUD(c, deltaFrameTime);
+        if (!s.player_invisible)
+            drawPlayer(c, s);
+
+        drawHUD(c, s);
+        c.restore();
     }
 
     /**
-     * Translates the X drawing area to fit the current player position
-     *
-     * @param c Canvas that needs to be translated (needed for width and height)
-     * @since 1.0
+     * Prepares the map renderer, the player atlas, the start circle and the background of the loaded stage, so the first frame does not have to.
+     * Must not be called while a GameThread is running
+     * @since 1.1
      */
-    private void translateX(Canvas c) {
-        if (this.player_velocity_x > 0) {
-            this.trans_x = this.player_pos_x * this.stage.stage_scale - 96 * this.stage.stage_scale;
-        } else {
-            this.trans_x = this.player_pos_x * this.stage.stage_scale - (c.getWidth() - 120 * this.stage.stage_scale);
-        }
-        if (this.trans_x < 0) this.trans_x = 0;
-        else if (this.trans_x > this.stage.stage_foreground.getWidth() * this.stage.stage_scale - c.getWidth())
-            this.trans_x = this.stage.stage_foreground.getWidth() * this.stage.stage_scale - c.getWidth();
-
-        this.trans_x_unscaled = this.trans_x / this.stage.stage_scale;
+    public void prepareDraw() {
+        this.stage.prepareBackground(); //renderers like RING_BUFFER only draw the stage with the first frame
+        if (this.stage_generation != this.drawn_stage_generation)
+            prepareStage(this.stage_generation);
     }
 
     /**
-     * Translates the Y drawing area to fit the current player position
-     *
-     * @param c Canvas that needs to be translated (needed for width and height)
-     * @since 1.0
+     * Composites the loaded stage with the map renderer, renders the player atlas for its scale and draws the stage name onto the start circle
+     * @param generation stage_generation of the loaded stage
      */
-    private void translateY(Canvas c) {
-        if (this.player_pos_y * this.stage.stage_scale + PLAYER_HEIGTH * this.stage.stage_scale > this.trans_y + c.getHeight() - (48 + PLAYER_HEIGTH) * this.stage.stage_scale)
-            this.trans_y = this.player_pos_y * this.stage.stage_scale + PLAYER_HEIGTH * this.stage.stage_scale - c.getHeight() + (48 + PLAYER_HEIGTH) * this.stage.stage_scale;
-        else if (this.player_pos_y * this.stage.stage_scale < this.trans_y + 48 * this.stage.stage_scale)
-            this.trans_y = this.player_pos_y * this.stage.stage_scale - 48 * this.stage.stage_scale;
-        if (this.trans_y < 0) this.trans_y = 0;
-        else if (this.trans_y > this.stage.stage_foreground.getHeight() * this.stage.stage_scale - c.getHeight())
-            this.trans_y = this.stage.stage_foreground.getHeight() * this.stage.stage_scale - c.getHeight();
-
-        this.trans_y_unscaled = this.trans_y / this.stage.stage_scale;
+    private void prepareStage(int generation) {
+        this.drawn_stage_generation = generation;
+        MapRenderer prefetched = StagePrefetcher.getInstance(this.context).takeRenderer(this.stage, this.camera.width, this.camera.heigth, this.map_renderer_type);
+        if (prefetched != null) {
+            this.map_renderer.release();
+            this.map_renderer = prefetched;
+        } else {
+            this.map_renderer.load(this.stage, this.camera.width, this.camera.heigth);
+        }
+        Stage retired = this.retired_stage.getAndSet(null);
+        if (retired != null)
+            retired.release();
+        this.player_atlas.prepare(this.player_frames, this.player_animations.getFrameCount(), this.stage.stage_scale);
+        this.start_circle_canvas.drawColor(Color.BLACK);
+        this.text_glyphs.draw(this.start_circle_canvas, this.stage.stage_name, this.screenWidth / 2, this.screenHeight / 2);
     }
 
     /**
-     * Draws the level including background
-     * Uses old way of drawing by scaling the whole bitmap (deprecated)
-     *
+     * Draws the level including background with the selected MapRenderer
      * @param c Canvas to draw the level onto
+     * @param s Snapshot to draw
      * @since 0.1
      */
-    /*private void drawMap(Canvas c) {
-        this.draw_src.set(
-                (int) (this.trans_x_unscaled),
-                (int) (this.trans_y_unscaled),
-                (int) (c.getWidth() / this.stage.stage_scale + this.trans_x_unscaled),
-                (int) (c.getHeight() / this.stage.stage_scale + this.trans_y_unscaled)
-        );
-
-        this.draw_tar.set(
-                0,
-                0,
-                c.getWidth(),
-                c.getHeight()
-        );
-
-        //c.drawBitmap(this.stage.stage_foreground, -this.trans_x, -this.trans_y, null);
-        c.drawBitmap(
-                this.stage.stage_foreground,
-                this.draw_src,
-                this.draw_tar,
-                null
-        );
-    }*/
-
-    /**
-     * Draws the level including background
-     * Uses new way of drawing by scaling the canvas and drawing the unscaled bitmap onto it
-     * @param c Canvas to draw the level onto
-     * @since 1.0
-     */
-    private void drawMap(Canvas c) {
-        /*this.draw_src.set(
-                (int) (this.trans_x_unscaled),
-                (int) (this.trans_y_unscaled),
-                (int) (c.getWidth() / this.stage.stage_scale + this.trans_x_unscaled),
-                (int) (c.getHeight() / this.stage.stage_scale + this.trans_y_unscaled)
-        );
-
-        this.draw_tar.set(
-                0,
-                0,
-                c.getWidth() / this.stage.stage_scale,
-                c.getHeight() / this.stage.stage_scale
-        );*/
-
-        c.scale(this.stage.stage_scale, this.stage.stage_scale);
-        c.drawBitmap(this.stage.stage_foreground, -this.trans_x_unscaled, -this.trans_y_unscaled, null);
-        //c.drawBitmap(this.stage.stage_foreground, this.draw_src, this.draw_tar, null);
-        c.scale(1 / this.stage.stage_scale, 1 / this.stage.stage_scale);
+    private void drawMap(Canvas c, RenderSnapshot s) {
+        this.map_renderer.draw(c, this.camera, s.velocity_x);
     }
 
     /**
-     * Draws the level including background
-     * Uses a new way of drawing by iterating and drawing tile by tile
-     * Unused because of background drawing
-     * @param c Canvas to draw the level onto
-     * @since 1.0
-     */
-    /*private void drawMap(Canvas c) {
-        int screentransx = (int)(trans_x % this.stage.tile_size_scaled);
-        int screentransy = (int)(trans_y % this.stage.tile_size_scaled);
-        int startx = (int)(this.trans_x / this.stage.tile_size_scaled);
-        int endx = startx + (int)(this.screenWidth / this.stage.tile_size_scaled) + 1;
-        int starty = (int)(this.trans_y / this.stage.tile_size_scaled);
-        int endy = starty + (int)(this.screenHeight / this.stage.tile_size_scaled) + 1;
-
-        for(int y = starty; y < endy; y++) {
-            for(int x = startx; x < endx; x++) {
-                if(this.stage.stage_tiles[x][y] != -1) {
-                    c.drawBitmap(
-                            this.stage.tiles_textures[this.stage.stage_tiles[x][y]],
-                            (x - startx) * (int) (this.stage.tile_size_scaled) - screentransx,
-                            (y - starty) * (int) (this.stage.tile_size_scaled) - screentransy,
-                            mapPaint);
-                } else {
-                    c.drawBitmap(
-                            this.stage.stage_background,
-                            null,
-                            new Rect((x - startx) * (int) (this.stage.tile_size_scaled) - screentransx, (y - starty) * (int) (this.stage.tile_size_scaled) - screentransy, (x - startx) * (int) (this.stage.tile_size_scaled) - screentransx + (int)this.stage.tile_size_scaled, (y - starty) * (int) (this.stage.tile_size_scaled) - screentransy + (int)this.stage.tile_size_scaled),
-                            mapPaint
-                    );
-                }
-            }
-        }
-    }*/
-
-    /**
-     * Draws the current player frame fully transformed
+     * Draws the current player frame from the pre-scaled atlas
      *
-     * @param c              Canvas to draw the player frame onto
-     * @param deltaFrameTime The passed time since the last frame
+     * @param c Canvas to draw the player frame onto
+     * @param s Snapshot to draw
      * @since 1.0
      */
-    private void drawPlayer(Canvas c, float deltaFrameTime) {
-        this.player_draw_matrix.reset();
-        if (this.player_velocity_x > 0) {
-            this.player_draw_matrix.setTranslate(this.player_pos_x * this.stage.stage_scale - this.trans_x, this.player_pos_y * this.stage.stage_scale - this.trans_y);
-            this.player_draw_matrix.preScale(this.player_draw_scale * this.stage.stage_scale, this.player_draw_scale * this.stage.stage_scale);
-        } else {
-            this.player_draw_matrix.setTranslate((this.player_pos_x + PLAYER_WIDTH) * this.stage.stage_scale - this.trans_x, this.player_pos_y * this.stage.stage_scale - this.trans_y);
-            this.player_draw_matrix.preScale(-this.player_draw_scale * this.stage.stage_scale, this.player_draw_scale * this.stage.stage_scale);
-        }
-
-        if (this.player_last_state == PlayerState.JUMPING && this.player_state == PlayerState.RUNNING) {
-            //LANDING
-            this.player_state = PlayerState.START_END_JUMP;
-            this.player_anim_time = 0;
-        }
-
-        this.player_anim_time = (this.player_anim_time + deltaFrameTime) % 1000;
-        switch (this.player_state) {
-            case IDLE:
-                this.player_current_frame = (int) ((this.player_anim_time / FRAME_TIME) % 11) + 8;
-                break;
-            case WAKEUP:
-                this.player_current_frame = (int) ((this.player_anim_time / FRAME_TIME) % 8) + 20;
-                break;
-            case RUNNING:
-                this.player_current_frame = (int) ((this.player_anim_time / FRAME_TIME) % 6) + 42;
-                if (this.gravity < 0) {
-                    this.player_draw_matrix.postTranslate(0, PLAYER_HEIGTH * this.stage.stage_scale);
-                    this.player_draw_matrix.preScale(1, -1);
-                }
-                break;
-            case JUMPING:
-                if (this.player_velocity_y < 0 && this.gravity > 0 || this.player_velocity_y > 0 && this.gravity < 0) {
-                    //JUMP UP
-                    this.player_current_frame = (int) (this.player_anim_time / FRAME_TIME) % 3 + 39;
-                } else if (this.player_velocity_y < 0 && this.gravity < 0 || this.player_velocity_y > 0 && this.gravity > 0) {
-                    //JUMP DOWN
-                    this.player_current_frame = (int) (this.player_anim_time / FRAME_TIME) % 2 + 34;
-                }
-                if (this.gravity < 0) {
-                    this.player_draw_matrix.postTranslate(0, 24 * this.stage.stage_scale);
-                    this.player_draw_matrix.preScale(1, -1);
-                }
-                break;
-            case START_END_JUMP:
-                if (this.player_anim_time > FRAME_TIME * 2) {
-                    if (this.player_last_state == PlayerState.JUMPING) {
-                        this.player_last_state = this.player_state;
-                        this.player_state = PlayerState.RUNNING;
-                    } else if (this.player_last_state == PlayerState.RUNNING) {
-                        this.player_last_state = this.player_state;
-                        this.player_state = PlayerState.JUMPING;
-                    }
-                    this.player_anim_time = 0;
-                }
-                this.player_current_frame = (int) ((this.player_anim_time) / FRAME_TIME) % 3 + 36;
-                if (this.gravity < 0) {
-                    this.player_draw_matrix.postTranslate(0, PLAYER_HEIGTH * this.stage.stage_scale);
-                    this.player_draw_matrix.preScale(1, -1);
-                }
-                break;
-            case GRAVITY:
-                if (this.gravity < 0) {
-                    this.player_current_frame = (int) (this.player_anim_time / FRAME_TIME) % 3 + 31;
-                } else {
-                    this.player_current_frame = (int) (this.player_anim_time / FRAME_TIME) % 3 + 28;
-                }
-                break;
-            case DYING:
-                if (this.player_anim_time > FRAME_TIME * 7) {
-                    this.player_invisible = true;
-                } else {
-                    this.player_current_frame = (int) ((this.player_anim_time / FRAME_TIME) % 8);
-                }
-                if (this.gravity < 0) {
-                    this.player_draw_matrix.postTranslate(0, PLAYER_HEIGTH * this.stage.stage_scale);
-                    this.player_draw_matrix.preScale(1, -1);
-                }
-                break;
-        }
-
-        c.drawBitmap(this.player_frames[this.player_current_frame], player_draw_matrix, null);
+    private void drawPlayer(Canvas c, RenderSnapshot s) {
+        int variant = (s.velocity_x > 0 ? 0 : PlayerAtlas.MIRRORED) | (s.player_flip ? PlayerAtlas.FLIPPED : 0);
+        this.player_atlas.draw(c, s.player_frame, variant,
+                this.player_draw_x * this.stage.stage_scale - this.camera.trans_x, this.player_draw_y * this.stage.stage_scale - this.camera.trans_y);
     }
 
     /**
      * Draws the HUD on the canvas
      * HUD includes pausescreen, deathscreen, finishedscreen, fadeins, fadeouts, deathcounter, ...
      *
-     * @param c              Canvas to draw the HUD onto
-     * @param deltaFrameTime Passed time since the last frame
+     * @param c Canvas to draw the HUD onto
+     * @param s Snapshot to draw
      * @since 1.0
      */
-    private void drawHUD(Canvas c, float deltaFrameTime) {
-        drawDeathCounter(c);
+    private void drawHUD(Canvas c, RenderSnapshot s) {
+        drawDeathCounter(c, s);
 
-        if (this.paused) {
-            drawFadeout(c, deltaFrameTime, 200, 128);
-            drawPauseScreen(c);
+        if (s.paused) {
+            drawFadeout(c, s);
+            drawPauseScreen(c, s);
         } else {
             c.drawBitmap(this.icon_pause, this.mute_pause_touch_zone.left, this.mute_pause_touch_zone.top, null);
+            drawFadeout(c, s);
         }
 
-        if (this.player_dead) {
+        if (s.player_dead) {
             //Player is dead. Draw retry message
-            drawFadeout(c, deltaFrameTime, 1000, 255, 300);
-            c.drawText(this.you_died_retry, this.screenWidth / 2, this.screenHeight / 2, this.text_paint);
-        } else if (this.finished) {
-            drawFadeout(c, deltaFrameTime, 2500, 255);
-            c.drawText(finished_next_level, this.screenWidth / 2, this.screenHeight / 2, this.text_paint);
-        } else if (this.start_circle_radius < 1) {
+            this.text_glyphs.draw(c, this.you_died_retry, this.screenWidth / 2, this.screenHeight / 2);
+        } else if (s.finished) {
+            this.text_glyphs.draw(c, this.finished_next_level, this.screenWidth / 2, this.screenHeight / 2);
+        } else if (s.start_circle_radius < 1) {
             //Stage has started. Draw expanding circle first second
-            this.start_circle_canvas.drawCircle((this.player_pos_x + PLAYER_WIDTH / 2f - this.trans_x_unscaled) * this.stage.stage_scale, (this.player_pos_y + PLAYER_HEIGTH / 2f - this.trans_y_unscaled) * this.stage.stage_scale, this.start_circle_radius * this.screenWidth, trans_paint);
+            this.start_circle_canvas.drawCircle((this.player_draw_x + PlayerSim.PLAYER_WIDTH / 2f - this.camera.trans_x_unscaled) * this.stage.stage_scale, (this.player_draw_y + PlayerSim.PLAYER_HEIGTH / 2f - this.camera.trans_y_unscaled) * this.stage.stage_scale, s.start_circle_radius * this.screenWidth, trans_paint);
             c.drawBitmap(start_circle_bmp, 0, 0, null);
-        } else if (this.player_no_input) {
-            drawFadeout(c, deltaFrameTime, 2500, 255);
-            EscapeSoundManager.getInstance(this.context).fadeSoundLoop(this.current_fade_out_time, 3500, 0f);
         }
+
+        if (SHOW_LATENCY)
+            drawLatency(c);
+    }
+
+    /**
+     * Draws the percentiles of the input latency in the top left corner
+     *
+     * @param c Canvas to draw the latency onto
+     * @since 1.1
+     */
+    private void drawLatency(Canvas c) {
+        if (this.latency_text_count != this.post_latency.count()) {
+            this.latency_text_count = this.post_latency.count();
+            this.latency_text = String.format("touch->post p50 %.1f p95 %.1f p99 %.1f ms (n=%d)",
+                    this.post_latency.percentileMs(50), this.post_latency.percentileMs(95), this.post_latency.percentileMs(99), this.latency_text_count);
+        }
+        c.drawText(this.latency_text, 8 * this.density, 16 * this.density, this.latency_paint);
     }
 
     /**
-     * Draws the death counter onthe canvas
+     * Draws the death counter onthe canvas. The counter is only rendered again if the deaths have changed
      *
      * @param c Canvas to draw the death counter onto
+     * @param s Snapshot to draw
      * @since 1.0
      */
-    private void drawDeathCounter(Canvas c) {
-        c.drawBitmap(this.death_counter_icon, 16 * this.density, c.getHeight() - this.death_counter_icon.getHeight() - 16 * this.density, null);
-        if(this.user.deathsCurrentLevel < 1000)
-            c.drawText("" + this.user.deathsCurrentLevel, 54 * this.density, c.getHeight() - 19 * this.density - this.death_counter_icon.getHeight() / 2f - this.death_counter_paint.ascent() / 2, this.death_counter_paint);
-        else
-            c.drawText("oof", 54 * this.density, c.getHeight() - 19 * this.density - this.death_counter_icon.getHeight() / 2f - this.death_counter_paint.ascent() / 2, this.death_counter_paint);
+    private void drawDeathCounter(Canvas c, RenderSnapshot s) {
+        Canvas layer = this.death_counter_layer.begin(Math.min(s.deaths, 1000));
+        if (layer != null) {
+            layer.drawBitmap(this.death_counter_icon, 0, 0, null);
+            float y = this.death_counter_icon.getHeight() / 2f - 3 * this.density - this.death_counter_paint.ascent() / 2;
+            if (s.deaths < 1000)
+                this.death_counter_glyphs.drawInt(layer, s.deaths, 38 * this.density, y);
+            else
+                this.death_counter_glyphs.draw(layer, "oof", 38 * this.density, y);
+        }
+        this.death_counter_layer.draw(c, 16 * this.density, this.screenHeight - this.death_counter_icon.getHeight() - 16 * this.density);
     }
 
     /**
-     * Draws the pause screen on the canvas
+     * Draws the pause screen on the canvas. The pause screen is only rendered again if the mute state has changed
      *
      * @param c Canvas to draw the pause screen onto
+     * @param s Snapshot to draw
      * @since 1.0
      */
-    private void drawPauseScreen(Canvas c) {
-        c.drawText(context.getResources().getText(R.string.pause_game).toString(), (this.screenWidth - this.controls_zone.width()) / 2, this.screenHeight / 2 - 40 * this.density, this.pause_paint);
+    private void drawPauseScreen(Canvas c, RenderSnapshot s) {
+        Canvas layer = this.pause_layer.begin(s.muted ? 1 : 0);
+        if (layer != null)
+            renderPauseScreen(layer, s.muted);
+        this.pause_layer.draw(c, 0, 0);
+    }
+
+    /**
+     * Renders the pause screen into the pause layer
+     *
+     * @param c     Canvas of the pause layer
+     * @param muted Sound is muted
+     * @since 1.1
+     */
+    private void renderPauseScreen(Canvas c, boolean muted) {
+        c.drawText(this.pause_game, (this.screenWidth - this.controls_zone.width()) / 2, this.screenHeight / 2 - 40 * this.density, this.pause_paint);
         c.drawRect(this.continue_touch_zone, this.button_paint);
         c.drawRect(this.exit_touch_zone, this.button_paint);
-        c.drawText(context.getResources().getText(R.string.continue_game).toString(), this.continue_touch_zone.centerX(), this.continue_touch_zone.centerY() - this.button_text_paint.ascent() / 2 - 2 * this.density, this.button_text_paint);
-        c.drawText(context.getResources().getText(R.string.backtomain).toString(), this.exit_touch_zone.centerX(), this.exit_touch_zone.centerY() - this.button_text_paint.ascent() / 2 - 2 * this.density, this.button_text_paint);
+        c.drawText(this.continue_game, this.continue_touch_zone.centerX(), this.continue_touch_zone.centerY() - this.button_text_paint.ascent() / 2 - 2 * this.density, this.button_text_paint);
+        c.drawText(this.back_to_main, this.exit_touch_zone.centerX(), this.exit_touch_zone.centerY() - this.button_text_paint.ascent() / 2 - 2 * this.density, this.button_text_paint);
 
         c.drawRect(this.controls_zone, this.button_paint);
-        c.drawText(this.context.getResources().getText(R.string.controls).toString(), this.controls_zone.centerX(), this.screenHeight * 0.2f, this.controls_header_paint);
-        drawMultiLineText(c, this.context.getResources().getText(R.string.control_gravity).toString(), this.controls_zone.centerX(), this.controls_zone.centerY() - 0.05f * this.screenHeight + this.button_text_paint.getTextSize(), this.controls_text_paint);
-        drawMultiLineText(c, this.context.getResources().getText(R.string.control_jump).toString(), this.controls_zone.centerX(), this.controls_zone.centerY() + this.icon_control_jump.getHeight() + 0.2f * this.screenHeight + this.button_text_paint.getTextSize(), this.controls_text_paint);
+        c.drawText(this.controls, this.controls_zone.centerX(), this.screenHeight * 0.2f, this.controls_header_paint);
+        drawMultiLineText(c, this.control_gravity_lines, this.controls_zone.centerX(), this.controls_zone.centerY() - 0.05f * this.screenHeight + this.button_text_paint.getTextSize(), this.controls_text_paint);
+        drawMultiLineText(c, this.control_jump_lines, this.controls_zone.centerX(), this.controls_zone.centerY() + this.icon_control_jump.getHeight() + 0.2f * this.screenHeight + this.button_text_paint.getTextSize(), this.controls_text_paint);
 
         c.drawBitmap(this.icon_control_gravity, this.controls_zone.centerX() - this.icon_control_gravity.getWidth() / 2f, this.controls_zone.centerY() - 0.05f * this.screenHeight - this.icon_control_gravity.getHeight(), null);
         c.drawBitmap(this.icon_control_jump, this.controls_zone.centerX() - this.icon_control_jump.getWidth() / 2f, this.controls_zone.centerY() + 0.2f * this.screenHeight, null);
 
-        if (EscapeSoundManager.getInstance(this.context).isMuted()) {
+        if (muted) {
             c.drawBitmap(this.icon_mute, this.mute_pause_touch_zone.left, this.mute_pause_touch_zone.top, null);
         } else {
             c.drawBitmap(this.icon_sound, this.mute_pause_touch_zone.left, this.mute_pause_touch_zone.top, null);
@@ -881,16 +669,15 @@ public class GameState {
     }
 
     /**
-     * Helper method to draw a string with line-breaks onto the canvas with proper styling
+     * Helper method to draw lines of text onto the canvas with proper styling
      * @param c Canvas to draw the text onto
-     * @param text Text to draw
+     * @param lines Lines to draw
      * @param x Position X on the canvas to draw
      * @param y Position Y on the canvas to draw
      * @param paint Paint to use for drawing the text
      * @since 1.0
      */
-    private void drawMultiLineText(Canvas c, String text, float x, float y, Paint paint) {
-        String[] lines = text.split("\n");
+    private void drawMultiLineText(Canvas c, String[] lines, float x, float y, Paint paint) {
         for(int i = 0; i < lines.length; i++, y += paint.getTextSize() + 2 * this.density) {
             c.drawText(lines[i], x, y, paint);
         }
@@ -899,43 +686,22 @@ public class GameState {
     /**
      * Draws the fadeout animation on the canvas
      *
-     * @param c              Canvas to draw the fadeout animation onto
-     * @param deltaFrameTime The passed time since the last frame
-     * @param fade_out_time  Time for the screen to fully turn black
-     * @param max_alpha      Maximum alpha for the fadeout effect
-     * @since 1.0
-     */
-    private void drawFadeout(Canvas c, float deltaFrameTime, int fade_out_time, int max_alpha) {
-        this.current_fade_out_time += deltaFrameTime;
-        c.drawARGB(Math.min((int) ((this.current_fade_out_time / fade_out_time) * max_alpha), max_alpha), 0, 0, 0);
-    }
-
-    /**
-     * Draws the fadeout animation on the canvas
-     *
-     * @param c              Canvas to draw the fadeout animation onto
-     * @param deltaFrameTime The passed time since the last frame
-     * @param fade_out_time  Time in ms for the screen to fully turn black
-     * @param max_alpha      Maximum alpha for the fadeout effect
-     * @param wait_time      Time in ms to wait before starting the fadeout effect
+     * @param c Canvas to draw the fadeout animation onto
+     * @param s Snapshot to draw
      * @since 1.0
      */
-    private void drawFadeout(Canvas c, float deltaFrameTime, int fade_out_time, int max_alpha, int wait_time) {
-        this.current_fade_out_time += deltaFrameTime;
-        if (this.current_fade_out_time > wait_time) {
-            c.drawARGB(Math.min((int) (((this.current_fade_out_time - wait_time) / fade_out_time) * max_alpha), max_alpha), 0, 0, 0);
-        }
+    private void drawFadeout(Canvas c, RenderSnapshot s) {
+        if (s.fade_alpha > 0)
+            c.drawARGB(s.fade_alpha, 0, 0, 0);
     }
 
     /**
-     * Sets the stage to finished
+     * Sets the stage to finished and saves the progress of the user
      * @since 1.0
      */
-    private void finishStage() {
+    @Override
+    public void onFinish() {
         this.finished = true;
-        this.player_last_state = this.player_state;
-        this.player_state = PlayerState.DYING; //Same animation as dying is played
-        this.player_anim_time = 0;
 
         if (this.update_user) {
             EscapeSoundManager.getInstance(this.context).stopSoundLoop();
@@ -963,38 +729,30 @@ public class GameState {
                 this.user.deathsTotal = 0; //tutorial deaths dont count
                 Concurrency.executeAsync(() -> updateUser(this.user));
             }
+
+            //the next stage is loaded while the finish screen is shown
+            if (this.user.currentLevel <= HighscoreActivity.TOTAL_LEVELS)
+                StagePrefetcher.getInstance(this.context).prefetch(this.user.currentLevel, this.density, this.camera.width, this.camera.heigth, this.map_renderer_type);
         }
         this.update_user = false;
     }
 
     /**
-     * Prepares finishing a stage by not allowing any more input
+     * Prepares finishing a stage by playing the level beat music
      * @since 1.0
      */
-    private void setNoPlayerInput() {
-        if (!this.player_no_input) {
-            EscapeSoundManager.getInstance(this.context).pauseMediaPlayer();
-            EscapeSoundManager.getInstance(this.context).playLevelBeatMusic();
-            this.player_no_input = true;
-            this.gravity = 1;
-            this.player_boost_x = 1.0f;
-            if (this.player_velocity_y < 0)
-                this.player_velocity_y = 0;
-        }
+    @Override
+    public void onNoInput() {
+        EscapeSoundManager.getInstance(this.context).pauseMediaPlayer();
+        EscapeSoundManager.getInstance(this.context).playLevelBeatMusic();
     }
 
     /**
-     * Sets the player to dead and applies the dying animation. Can be called multiple times
+     * Plays the death sound and counts the death of the user
      * @since 1.0
      */
-    private void killPlayer() {
-        if (!this.player_dead)
-            this.player_dead = true;
-
-        this.player_last_state = this.player_state;
-        this.player_state = PlayerState.DYING;
-        this.player_anim_time = 0;
-
+    @Override
+    public void onDeath() {
         if (this.update_user) {
             EscapeSoundManager.getInstance(this.context).pauseMediaPlayer();
             EscapeSoundManager.getInstance(this.context).stopSoundLoop();
@@ -1007,101 +765,146 @@ public class GameState {
     }
 
     /**
-     * Inverts the gravity of the game to face upside down. Also marks the player to be in air
-     * Only works if player is not in air when method call happens
-     *
-     * @since 0.1
+     * Plays the sound for the new gravity
+     * @param gravity The new gravity. 1 is regular, -1 is inverted
+     * @since 1.1
      */
-    private void invertGravity() {
-        if (!this.player_inAir || !this.player_first_gravity_inAir) {
-            this.gravity *= -1;
-            this.player_inAir = true;
-            this.player_first_gravity_inAir = true;
-
-            this.player_last_state = this.player_state;
-            this.player_state = PlayerState.GRAVITY;
-            this.player_anim_time = 0;
-
-            if (this.gravity < 0)
-                EscapeSoundManager.getInstance(this.context).playSound(EscapeSoundManager.getInstance(this.context).snd_gravity_up);
-            else
-                EscapeSoundManager.getInstance(this.context).playSound(EscapeSoundManager.getInstance(this.context).snd_gravity_down);
-        }
+    @Override
+    public void onGravityChanged(byte gravity) {
+        if (gravity < 0)
+            EscapeSoundManager.getInstance(this.context).playSound(EscapeSoundManager.getInstance(this.context).snd_gravity_up);
+        else
+            EscapeSoundManager.getInstance(this.context).playSound(EscapeSoundManager.getInstance(this.context).snd_gravity_down);
     }
 
     /**
-     * Sets the vertical velocity of the player to make a small jump. Also marks the player to be in air
-     * Only works if player is not in air when method call happens
-     *
-     * @since 0.1
+     * Plays the jump sound
+     * @since 1.1
      */
-    private void jump() {
-        if (!this.player_inAir) {
-            if(this.player_onJumper)
-                this.player_velocity_y = -360 * gravity;
-            else
-                this.player_velocity_y = -240 * gravity;
-            this.player_inAir = true;
+    @Override
+    public void onJump() {
+        EscapeSoundManager.getInstance(this.context).playSound(EscapeSoundManager.getInstance(this.context).snd_jump);
+    }
 
-            this.player_last_state = this.player_state;
-            this.player_state = PlayerState.START_END_JUMP;
-            this.player_anim_time = 0;
+    /**
+     * Plays the sound of steps while the player is running
+     * @since 1.1
+     */
+    @Override
+    public void onGrounded() {
+        EscapeSoundManager.getInstance(this.context).playSoundLoop(EscapeSoundManager.getInstance(this.context).snd_steps);
+    }
 
-            EscapeSoundManager.getInstance(this.context).playSound(EscapeSoundManager.getInstance(this.context).snd_jump);
-        }
+    /**
+     * Stops the sound of steps while the player is in the air
+     * @since 1.1
+     */
+    @Override
+    public void onAirborne() {
+        EscapeSoundManager.getInstance(this.context).stopSoundLoop();
     }
 
     /**
-     * Manipulates the state of the game depending on incoming MotionEvents
+     * Queues incoming MotionEvents. Called on the UI thread, the touch is applied by processInput() before the next simulation step
      *
      * @param event Incoming MotionEvent
      * @since 0.1
      */
     public void onTouchEvent(MotionEvent event) {
-        if (event.getAction() == MotionEvent.ACTION_DOWN) {
-            if (this.paused) {
-                if (this.continue_touch_zone.contains(event.getX(), event.getY())) {
-                    this.paused = false;
-                    this.current_fade_out_time = 0;
-                    EscapeSoundManager.getInstance(this.context).playSound(EscapeSoundManager.getInstance(this.context).snd_button);
-                } else if (this.exit_touch_zone.contains(event.getX(), event.getY())) {
-                    this.running = false;
-                    EscapeSoundManager.getInstance(this.context).playSound(EscapeSoundManager.getInstance(this.context).snd_button);
-                } else if (this.mute_pause_touch_zone.contains(event.getX(), event.getY())) {
-                    EscapeSoundManager.getInstance(this.context).toggleMute(this.stage.current_music_id);
-                    EscapeSoundManager.getInstance(this.context).playSound(EscapeSoundManager.getInstance(this.context).snd_button);
-                }
-            } else if (this.mute_pause_touch_zone.contains(event.getX(), event.getY()) && !this.player_no_input && !this.player_dead && !this.finished && this.started) {
-                this.paused = true;
-                EscapeSoundManager.getInstance(this.context).stopSoundLoop();
+        if (event.getAction() == MotionEvent.ACTION_DOWN)
+            this.input_queue.offer(InputQueue.TOUCH, event.getX(), event.getY(), event.getEventTime() * 1_000_000L);
+    }
+
+    /**
+     * Applies all inputs that arrived since the last simulation step. Called by the GameThread before every step
+     * @since 1.1
+     */
+    public void processInput() {
+        while (this.input_queue.poll(this.input_command)) {
+            if (this.input_command.type == InputQueue.TOUCH) {
+                this.consume_latency.record(System.nanoTime() - this.input_command.event_time);
+                if (this.pending_events < this.pending_event_times.length)
+                    this.pending_event_times[this.pending_events++] = this.input_command.event_time;
+                handleTouch(this.input_command.x, this.input_command.y);
+            }
+            else if (this.input_command.type == InputQueue.BACK)
+                handleBackPressed();
+        }
+    }
+
+    /**
+     * Records the latency of all touches of the snapshot that no earlier frame has shown. Called by the GameThread after unlockCanvasAndPost.
+     * Touches of snapshots that were replaced before they were drawn are carried over to the next snapshot, so every touch is measured once
+     * @param s         Snapshot that was drawn
+     * @param post_time Time the frame was posted in ns
+     * @since 1.1
+     */
+    public void onFramePosted(RenderSnapshot s, long post_time) {
+        long posted = this.posted_events;
+        for (int i = (int) Math.max(0, posted - s.first_event); i < s.events; i++)
+            this.post_latency.record(post_time - s.event_times[i]);
+        if (s.first_event + s.events > posted)
+            this.posted_events = s.first_event + s.events;
+    }
+
+    /**
+     * Writes the input latency percentiles to the log
+     * @since 1.1
+     */
+    public void dumpLatency() {
+        Log.i(TAG, "touch to consume: " + this.consume_latency);
+        Log.i(TAG, "touch to post: " + this.post_latency);
+    }
+
+    /**
+     * Manipulates the state of the game depending on a touch. Runs on the GameThread
+     *
+     * @param x Touch position x in px
+     * @param y Touch position y in px
+     * @since 1.1
+     */
+    private void handleTouch(float x, float y) {
+        if (this.paused) {
+            if (this.continue_touch_zone.contains(x, y)) {
+                this.paused = false;
+                this.current_fade_out_time = 0;
                 EscapeSoundManager.getInstance(this.context).playSound(EscapeSoundManager.getInstance(this.context).snd_button);
-            } else if (this.player_dead) {
-                retry();
-            } else if (this.finished) {
-                if (SKIP_FINISH_SPLASH_SCREEN) {
-                    load(this.user.currentLevel);
-                } else {
-                    this.running = false;
-                    Bundle bundle = ActivityOptionsCompat.makeCustomAnimation(this.context, android.R.anim.fade_in, android.R.anim.fade_out).toBundle();
-                    Intent intent = new Intent(this.context, FinishStageActivity.class);
-                    intent.putExtra("current_deaths", this.current_deaths);
-                    intent.putExtra("next_level", this.user.currentLevel); //user has already been updated with next level
-                    intent.putExtra("screen_width", this.screenWidth);
-                    this.context.startActivity(intent, bundle);
-                }
-            } else if (!this.started) {
-                this.started = true;
-                this.player_last_state = this.player_state;
-                this.player_state = PlayerState.WAKEUP;
-                this.player_anim_time = 0;
+            } else if (this.exit_touch_zone.contains(x, y)) {
+                this.running = false;
+                EscapeSoundManager.getInstance(this.context).playSound(EscapeSoundManager.getInstance(this.context).snd_button);
+            } else if (this.mute_pause_touch_zone.contains(x, y)) {
+                EscapeSoundManager.getInstance(this.context).toggleMute(this.stage.current_music_id);
                 EscapeSoundManager.getInstance(this.context).playSound(EscapeSoundManager.getInstance(this.context).snd_button);
-            } else if (!this.player_no_input) {
-                if (event.getX() < this.screenWidth / 2) {
-                    invertGravity();
-                } else {
-                    jump();
-                }
             }
+        } else if (this.mute_pause_touch_zone.contains(x, y) && !this.sim.player_no_input && !this.sim.player_dead && !this.finished && this.started) {
+            this.paused = true;
+            EscapeSoundManager.getInstance(this.context).stopSoundLoop();
+            EscapeSoundManager.getInstance(this.context).playSound(EscapeSoundManager.getInstance(this.context).snd_button);
+        } else if (this.sim.player_dead) {
+            retry();
+        } else if (this.finished) {
+            if (SKIP_FINISH_SPLASH_SCREEN) {
+                load(this.user.currentLevel);
+            } else {
+                this.running = false;
+                Bundle bundle = ActivityOptionsCompat.makeCustomAnimation(this.context, android.R.anim.fade_in, android.R.anim.fade_out).toBundle();
+                Intent intent = new Intent(this.context, FinishStageActivity.class);
+                intent.putExtra("current_deaths", this.current_deaths);
+                intent.putExtra("next_level", this.user.currentLevel); //user has already been updated with next level
+                intent.putExtra("screen_width", this.screenWidth);
+                this.context.startActivity(intent, bundle);
+            }
+        } else if (!this.started) {
+            this.started = true;
+            this.sim.player_last_state = this.sim.player_state;
+            this.sim.player_state = PlayerState.WAKEUP;
+            this.sim.player_anim_time = 0;
+            EscapeSoundManager.getInstance(this.context).playSound(EscapeSoundManager.getInstance(this.context).snd_button);
+        } else if (!this.sim.player_no_input) {
+            int input = x < this.screenWidth / 2 ? InputRecording.GRAVITY : InputRecording.JUMP;
+            if (this.recording != null)
+                this.recording.record(this.sim.player_tick, input);
+            this.sim.apply(input);
         }
     }
 
@@ -1110,10 +913,18 @@ public class GameState {
      * @since 1.0
      */
     public void onBackPressed() {
-        if(this.player_no_input)
+        this.input_queue.offer(InputQueue.BACK, 0, 0, System.nanoTime());
+    }
+
+    /**
+     * Pauses the game or leaves the stage if it is already paused. Runs on the GameThread
+     * @since 1.1
+     */
+    private void handleBackPressed() {
+        if(this.sim.player_no_input)
             return;
 
-        if (!this.paused && this.started && !this.player_dead) {
+        if (!this.paused && this.started && !this.sim.player_dead) {
             this.paused = true;
             EscapeSoundManager.getInstance(this.context).stopSoundLoop();
             EscapeSoundManager.getInstance(this.context).playSound(EscapeSoundManager.getInstance(this.context).snd_button);
@@ -1121,6 +932,8 @@ public class GameState {
             this.user.deathsCurrentLevel++;
             this.user.deathsTotal++;
             Concurrency.executeAsync(() -> updateUser(this.user));
+            if (this.started)
+                saveRecording();
             this.running = false;
             EscapeSoundManager.getInstance(this.context).playSound(EscapeSoundManager.getInstance(this.context).snd_button);
         }
@@ -1137,33 +950,27 @@ public class GameState {
         this.paused = false;
         this.finished = false;
 
-        this.stage.load(level);
+        Stage prefetched = StagePrefetcher.getInstance(this.context).takeStage(level, this.density);
+        if (prefetched != null) {
+            Stage older = this.retired_stage.getAndSet(this.stage); //set if no frame was drawn since the last load. the map renderer switches to the new stage before it draws again
+            if (older != null)
+                older.release();
+            this.stage = prefetched;
+        } else
+            this.stage.load(level);
+        this.stage_generation++; //the map renderer and the start circle are prepared before the next frame is drawn
 
         EscapeSoundManager.getInstance(this.context).releaseMediaPlayer();
         EscapeSoundManager.getInstance(this.context).initMediaPlayer(this.stage.current_music_id, true);
 
-        this.player_pos_x = stage.player_start_x * 24;
-        this.player_pos_y = stage.player_start_y * 24 + 24 - PLAYER_HEIGTH;
-        this.player_velocity_x = stage.player_velocity_x;
-        this.player_boost_x = 1.0f;
-        this.player_velocity_y = 0;
-        this.player_acceleration_y = 450;
-        this.player_dead = false;
-        this.player_inAir = true;
-        this.player_onBoost = false;
-        this.player_onJumper = false;
-        this.player_first_gravity_inAir = false;
-        this.gravity = 1;
+        this.sim.reset(this.stage.stage_grid, this.stage.player_start_x, this.stage.player_start_y, this.stage.player_velocity_x, PlayerState.IDLE);
+        this.player_prev_pos_x = this.sim.player_pos_x;
+        this.player_prev_pos_y = this.sim.player_pos_y;
+        this.recording = new InputRecording(level, PlayerSim.STEP_NANOS);
 
         this.start_circle_radius = 0.1f;
-        this.start_circle_canvas.drawColor(Color.BLACK);
-        this.start_circle_canvas.drawText(this.stage.stage_name, this.screenWidth / 2, this.screenHeight / 2, this.text_paint);
 
-        this.player_last_state = this.player_state;
-        this.player_state = PlayerState.IDLE;
-        this.player_anim_time = 0;
-        this.player_invisible = false;
-        this.player_no_input = false;
+        this.player_animator.reset();
         this.current_fade_out_time = 0;
 
         this.update_user = true;
@@ -1175,24 +982,14 @@ public class GameState {
      * @since 0.1
      */
     private void retry() {
-        this.trans_x = 0;
-        this.trans_y = 0;
-        this.player_pos_x = stage.player_start_x * 24;
-        this.player_pos_y = stage.player_start_y * 24;
-        this.player_velocity_x = stage.player_velocity_x;
-        this.player_boost_x = 1.0f;
-        this.player_velocity_y = 0;
-        this.player_dead = false;
-        this.player_inAir = true;
-        this.player_onBoost = false;
-        this.player_onJumper = false;
-        this.player_first_gravity_inAir = false;
-        this.gravity = 1;
-
-        this.player_last_state = this.player_state;
-        this.player_state = PlayerState.WAKEUP;
-        this.player_anim_time = 0;
-        this.player_invisible = false;
+        int level = this.recording != null ? this.recording.level : this.user.currentLevel;
+        this.attempt++; //the camera is reset before the next frame is drawn
+        this.sim.reset(this.stage.stage_grid, this.stage.player_start_x, this.stage.player_start_y, this.stage.player_velocity_x, PlayerState.WAKEUP);
+        this.player_prev_pos_x = this.sim.player_pos_x;
+        this.player_prev_pos_y = this.sim.player_pos_y;
+        this.recording = new InputRecording(level, PlayerSim.STEP_NANOS);
+
+        this.player_animator.reset();
         this.current_fade_out_time = 0;
 
         this.paused = false;
@@ -1203,6 +1000,20 @@ public class GameState {
         EscapeSoundManager.getInstance(this.context).resumeMediaPlayer();
     }
 
+    /**
+     * Stores the outcome of the current attempt and saves its inputs in the background
+     * @since 1.1
+     */
+    private void saveRecording() {
+        if (this.recording == null)
+            return;
+        InputRecording recording = this.recording;
+        this.recording = null;
+        recording.end(this.sim);
+        Context context = this.context.getApplicationContext();
+        Concurrency.executeAsync(() -> ReplayStore.save(context, recording));
+    }
+
     /**
      * Sets the user of the GameState. This is used as save file
      * After the user is set, it will laod the current level of the User
@@ -1214,6 +1025,35 @@ public class GameState {
         load(this.user.currentLevel);
     }
 
+    /**
+     * Gives the bitmaps of the GameState and its stage back to the BitmapCache, releases the map renderer, the player atlas, the HUD layers and glyph atlases
+     * and recycles the start circle.
+     * Called when the GameState is not drawn anymore
+     * @since 1.1
+     */
+    public void release() {
+        BitmapCache cache = BitmapCache.getInstance(this.context);
+        cache.release(this.player_frames);
+        cache.release(this.death_counter_icon);
+        cache.release(this.icon_mute);
+        cache.release(this.icon_sound);
+        cache.release(this.icon_pause);
+        cache.release(this.icon_control_jump);
+        cache.release(this.icon_control_gravity);
+        this.player_frames = null;
+        this.stage.release();
+        Stage retired = this.retired_stage.getAndSet(null);
+        if (retired != null)
+            retired.release();
+        this.map_renderer.release();
+        this.player_atlas.release();
+        this.pause_layer.release();
+        this.death_counter_layer.release();
+        this.text_glyphs.release();
+        this.death_counter_glyphs.release();
+        this.start_circle_bmp.recycle();
+    }
+
     /**
      * Updates the User in the database with new values like deaths count or level id
      * @param user User to be updated
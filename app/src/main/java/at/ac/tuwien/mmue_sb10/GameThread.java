@@ -12,12 +12,17 @@ import android.content.Context;
 import android.content.Intent;
 import android.graphics.Canvas;
 import android.graphics.Color;
+import android.os.Build;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.SurfaceHolder;
 
 import androidx.core.app.ActivityOptionsCompat;
 
+import at.ac.tuwien.mmue_sb10.sim.PlayerSim;
+import at.ac.tuwien.mmue_sb10.util.LatencyHistogram;
+import at.ac.tuwien.mmue_sb10.util.TripleBuffer;
+
 /**
  * This class mainly handles the render loop
  * @since 0.1
@@ -27,23 +32,53 @@ public class GameThread extends Thread {
 
     private static final String TAG = GameThread.class.getSimpleName();
 
+    private static final long MAX_FRAME_NANOS = 250_000_000L; //longer frames are cut off so a stall can not pile up endless simulation steps
+    private static final boolean HARDWARE_CANVAS_SUPPORTED = Build.VERSION.SDK_INT >= Build.VERSION_CODES.O; //lockHardwareCanvas needs API 26
+
     private GameState state;
     private SurfaceHolder holder;
     private Context context;
+    private FramePacer pacer;
+    private ResolutionScaler scaler;
+    private TripleBuffer<RenderSnapshot> snapshots; //snapshots from the SimulationThread. null if the simulation runs on this thread
 
     private Canvas canvas;
+    private volatile boolean hardware_canvas; //draw with lockHardwareCanvas. ignored below API 26
+    private final LatencyHistogram software_frames = new LatencyHistogram(MAX_FRAME_NANOS); //time from the start of a frame until it is posted, software canvas
+    private final LatencyHistogram hardware_frames = new LatencyHistogram(MAX_FRAME_NANOS); //time from the start of a frame until it is posted, hardware canvas
+    private final RenderSnapshot snapshot = new RenderSnapshot(); //snapshot of the state if the simulation runs on this thread
 
     /**
      * Creates a new GameThread instance
      *
      * @param state  GameState instance that will be updated and rendered
      * @param holder SurfaceHolder of the SurfaceView
+     * @param pacer  Decides when a frame is rendered
+     * @param scaler Decides the resolution the frames are rendered at
+     * @param two_threads true to run the simulation on a SimulationThread and only render on this thread
+     * @param hardware_canvas true to draw with a hardware accelerated canvas on API 26 and above
      * @since 0.1
      */
-    public GameThread(GameState state, SurfaceHolder holder, Context context) {
+    public GameThread(GameState state, SurfaceHolder holder, Context context, FramePacer pacer, ResolutionScaler scaler, boolean two_threads, boolean hardware_canvas) {
         this.state = state;
         this.holder = holder;
         this.context = context;
+        this.pacer = pacer;
+        this.scaler = scaler;
+        if (two_threads)
+            this.snapshots = new TripleBuffer<>(new RenderSnapshot(), new RenderSnapshot(), new RenderSnapshot());
+        this.hardware_canvas = hardware_canvas;
+    }
+
+    /**
+     * Switches between the hardware accelerated and the software canvas. Takes effect with the next frame, can be called from any thread.
+     * Below API 26 the software canvas is always used
+     *
+     * @param hardware_canvas true to draw with lockHardwareCanvas
+     * @since 1.1
+     */
+    public void setHardwareCanvas(boolean hardware_canvas) {
+        this.hardware_canvas = hardware_canvas;
     }
 
     /**
@@ -59,40 +94,139 @@ public class GameThread extends Thread {
 
     /**
      * Renderloop that renders the gamestate onto the screen
+     * Between frames the thread is parked by the FramePacer until the next frame is due. The time from the start of a frame until it is posted
+     * is reported to the ResolutionScaler, which resizes the surface if the frames are too slow or have enough headroom
      *
      * @since 0.1
      */
     @Override
     public void run() {
-        long currentFrameTime, deltaFrameTime, lastFrameTime = System.currentTimeMillis();
+        this.pacer.start();
         try {
-            while (this.state.running) {
-                currentFrameTime = System.currentTimeMillis();
-                deltaFrameTime = currentFrameTime - lastFrameTime;
-
-                state.update(deltaFrameTime);
-
-                try {
-                    canvas = holder.lockCanvas();
-                    synchronized (holder) {
-                        state.draw(canvas, deltaFrameTime);
-                    }
-                } finally {
-                    if (canvas != null) {
-                        holder.unlockCanvasAndPost(canvas);
-                    }
-                }
-
-                lastFrameTime = currentFrameTime;
-            }
+            if (this.snapshots != null)
+                renderLoop();
+            else
+                serialLoop();
         } catch (NullPointerException npe) {
             npe.printStackTrace();
         }
 
+        this.pacer.stop();
+        Log.i(TAG, "frame pacing: " + this.pacer + ", " + this.scaler);
+        if (this.software_frames.count() > 0)
+            Log.i(TAG, "software canvas frames: " + this.software_frames);
+        if (this.hardware_frames.count() > 0)
+            Log.i(TAG, "hardware canvas frames: " + this.hardware_frames);
+        this.state.dumpLatency();
+        this.state.release();
         if (!this.state.finished)
             end();
     }
 
+    /**
+     * Simulates and renders on this thread.
+     * The simulation is advanced in fixed steps of PlayerSim.STEP_MS. The time of a frame is accumulated and as many steps as fit into it are
+     * processed, inputs are applied right before a step. The remainder is handed to draw() as interpolation factor between the last two simulation steps
+     *
+     * @since 1.1
+     */
+    private void serialLoop() {
+        long currentFrameTime, deltaFrameTime, lastFrameTime = System.nanoTime();
+        long accumulator = 0;
+        while (this.state.running) {
+            this.pacer.awaitFrame();
+            currentFrameTime = System.nanoTime();
+            deltaFrameTime = Math.min(currentFrameTime - lastFrameTime, MAX_FRAME_NANOS);
+
+            accumulator += deltaFrameTime;
+            while (accumulator >= PlayerSim.STEP_NANOS) {
+                state.processInput();
+                state.update(PlayerSim.STEP_MS);
+                accumulator -= PlayerSim.STEP_NANOS;
+            }
+            state.snapshot(this.snapshot);
+
+            drawFrame(this.snapshot, (float) accumulator / PlayerSim.STEP_NANOS, currentFrameTime);
+            lastFrameTime = currentFrameTime;
+        }
+    }
+
+    /**
+     * Renders the latest snapshot of a SimulationThread on this thread. Neither thread waits for the other.
+     * The player is interpolated by the time that passed since the snapshot was taken
+     *
+     * @since 1.1
+     */
+    private void renderLoop() {
+        //the first snapshot is published before the simulation starts, so there is always something to draw
+        this.state.snapshot(this.snapshots.getBack());
+        this.snapshots.publish();
+        SimulationThread simulation = new SimulationThread(this.state, this.snapshots);
+        simulation.start();
+        try {
+            while (this.state.running) {
+                this.pacer.awaitFrame();
+                long currentFrameTime = System.nanoTime();
+                RenderSnapshot s = this.snapshots.getFront();
+                drawFrame(s, Math.min(1f, (float) (currentFrameTime - s.time) / PlayerSim.STEP_NANOS), currentFrameTime);
+            }
+        } finally {
+            this.state.running = false;
+            try {
+                simulation.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Draws a snapshot onto the surface and posts it. Uses a hardware accelerated canvas if it is enabled and supported.
+     * The software path is the same as before, so its output stays comparable pixel by pixel
+     *
+     * @param s                Snapshot to draw
+     * @param alpha            Progress between the last and the next simulation step (0 to 1)
+     * @param currentFrameTime Start of the frame in ns
+     * @since 1.1
+     */
+    private void drawFrame(RenderSnapshot s, float alpha, long currentFrameTime) {
+        boolean hardware = this.hardware_canvas && HARDWARE_CANVAS_SUPPORTED;
+        try {
+            canvas = hardware ? holder.lockHardwareCanvas() : holder.lockCanvas();
+            synchronized (holder) {
+                state.draw(canvas, s, alpha);
+            }
+        } finally {
+            if (canvas != null) {
+                holder.unlockCanvasAndPost(canvas);
+                state.onFramePosted(s, System.nanoTime());
+            }
+        }
+        this.pacer.frameDone();
+        long frame_nanos = System.nanoTime() - currentFrameTime;
+        (hardware ? this.hardware_frames : this.software_frames).record(frame_nanos);
+        if (this.scaler.frameDone(frame_nanos))
+            resize();
+    }
+
+    /**
+     * Resizes the surface to the resolution of the ResolutionScaler. The size can only be changed from the UI thread,
+     * the GameState notices the new size when it locks the next canvas
+     * @since 1.1
+     */
+    private void resize() {
+        Log.i(TAG, "resolution changed: " + this.scaler);
+        boolean native_size = this.scaler.isNative();
+        int width = this.scaler.getWidth();
+        int heigth = this.scaler.getHeigth();
+        ((Activity) this.context).runOnUiThread(() -> {
+            if (native_size)
+                this.holder.setSizeFromLayout();
+            else
+                this.holder.setFixedSize(width, heigth);
+        });
+    }
+
     /**
      * Finishes the GameActivity when the GameState is not running anymore
      * @since 1.0
@@ -2,6 +2,11 @@ package at.ac.tuwien.mmue_sb10;
 
 import android.app.Activity;
 import android.content.Context;
+import android.content.SharedPreferences;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
 import android.graphics.Point;
 import android.graphics.PointF;
 import android.graphics.Rect;
@@ -15,11 +20,7 @@ import android.view.WindowManager;
 
 import androidx.annotation.NonNull;
 
-import java.util.List;
-
 import at.ac.tuwien.mmue_sb10.persistence.EscapeDatabase;
-import at.ac.tuwien.mmue_sb10.persistence.OnUserLoadedListener;
-import at.ac.tuwien.mmue_sb10.persistence.User;
 import at.ac.tuwien.mmue_sb10.util.Concurrency;
 
 /**
@@ -29,14 +30,16 @@ import at.ac.tuwien.mmue_sb10.util.Concurrency;
  * @since 0.1
  * @author Lukas Lidauer & Jan König
  */
-public class GameView extends SurfaceView implements SurfaceHolder.Callback {
+public class GameView extends SurfaceView implements SurfaceHolder.Callback, GameLoader.Listener {
 
     private static final String TAG = GameView.class.getSimpleName();
 
-    private GameState state;
-    private GameThread thread;
+    private GameState state; //null until the GameLoader is done
+    private GameThread thread; //null until the GameLoader is done
+    private GameLoader loader; //loads the game while the surface exists
+    private Paint progress_paint; //paint for the loading bar
     /**
-     * The FPS of the device this program is running on
+     * The FPS of the device this program is running on. Frames are paced to this rate or to the target_fps preference
      */
     private float fps;
     /**
@@ -52,24 +55,33 @@ public class GameView extends SurfaceView implements SurfaceHolder.Callback {
      */
     private int screenHeigth;
 
-    private final OnUserLoadedListener onUserLoadedListener = this::onUserLoaded;
-
     public GameView(Context context) {
         super(context);
-        getHolder().addCallback(this);
-        setFocusable(true);
+        init();
     }
 
     public GameView(Context context, AttributeSet attrs) {
         super(context, attrs);
-        getHolder().addCallback(this);
-        setFocusable(true);
+        init();
     }
 
     public GameView(Context context, AttributeSet attrs, int defStyle) {
         super(context, attrs, defStyle);
+        init();
+    }
+
+    /**
+     * Registers the callbacks and sets the pixel format of the surface. The surface is opaque,
+     * the surface_rgb565 preference halves the memory bandwidth of composition at the cost of color depth
+     * @since 1.1
+     */
+    private void init() {
         getHolder().addCallback(this);
+        boolean rgb565 = getContext().getSharedPreferences("escapePrefs", 0).getBoolean("surface_rgb565", false);
+        getHolder().setFormat(rgb565 ? PixelFormat.RGB_565 : PixelFormat.OPAQUE);
         setFocusable(true);
+        this.progress_paint = new Paint();
+        this.progress_paint.setColor(Color.GREEN);
     }
 
     @Override
@@ -84,13 +96,9 @@ public class GameView extends SurfaceView implements SurfaceHolder.Callback {
         this.screenWidth = r.width();
         this.screenHeigth = r.height();
 
-        this.state = new GameState(getContext(), this.density, this.screenWidth, this.screenHeigth);
-        this.thread = new GameThread(state, holder, getContext());
-
-        Concurrency.executeAsync(() -> {
-            User user = loadUser();
-            ((Activity)getContext()).runOnUiThread(() -> onUserLoadedListener.onUserLoaded(user));
-        });
+        onLoadProgress(0);
+        this.loader = new GameLoader((Activity) getContext(), this.density, this.screenWidth, this.screenHeigth, this);
+        this.loader.start();
     }
 
     @Override
@@ -105,29 +113,55 @@ public class GameView extends SurfaceView implements SurfaceHolder.Callback {
 
     @Override
     public boolean onTouchEvent(MotionEvent event) {
-        if(event.getAction() == MotionEvent.ACTION_DOWN) {
+        if(event.getAction() == MotionEvent.ACTION_DOWN && this.state != null) {
             this.state.onTouchEvent(event);
         }
         return super.onTouchEvent(event);
     }
 
     /**
-     * Is called when the user finished loading from SQLite DB
-     * @param user User that has been loaded
-     * @since 1.0
+     * Draws the loading bar onto the surface
+     * @param progress Progress between 0 and 1
+     * @since 1.1
      */
-    private void onUserLoaded(User user) {
-        if(user.currentLevel > HighscoreActivity.TOTAL_LEVELS) {
-
-            Concurrency.executeAsync(this::deleteUser);
-
-            ((Activity) getContext()).finish();
+    @Override
+    public void onLoadProgress(float progress) {
+        Canvas c = getHolder().lockCanvas();
+        if (c == null)
             return;
-        }
-        this.state.setUser(user);
+        c.drawColor(Color.BLACK);
+        c.drawRect(this.screenWidth * 0.25f, this.screenHeigth / 2f - 4 * this.density,
+                this.screenWidth * (0.25f + 0.5f * progress), this.screenHeigth / 2f + 4 * this.density, this.progress_paint);
+        getHolder().unlockCanvasAndPost(c);
+    }
+
+    /**
+     * Is called when the GameLoader has loaded the stage of the user. Creates the GameThread and starts the game
+     * @param state GameState that is ready to run
+     * @since 1.1
+     */
+    @Override
+    public void onLoaded(GameState state) {
+        this.loader = null;
+        this.state = state;
+        SharedPreferences prefs = getContext().getSharedPreferences("escapePrefs", 0);
+        FramePacer pacer = new FramePacer(this.fps, prefs.getInt("target_fps", FramePacer.NATIVE));
+        ResolutionScaler scaler = new ResolutionScaler(prefs.getBoolean("dynamic_resolution", true), pacer.getFramePeriod(), this.screenWidth, this.screenHeigth);
+        this.thread = new GameThread(state, getHolder(), getContext(), pacer, scaler, prefs.getBoolean("two_threads", false), prefs.getBoolean("hardware_canvas", false));
         startgame();
     }
 
+    /**
+     * Is called when the user has already finished all stages. Deletes the user and leaves the game
+     * @since 1.0
+     */
+    @Override
+    public void onAllStagesFinished() {
+        this.loader = null;
+        Concurrency.executeAsync(this::deleteUser);
+        ((Activity) getContext()).finish();
+    }
+
     /**
      * Starts the game and while doing so sets density, FPS and screen ration.
      * This method also handles which level will be loaded but currently is static since no database is yet implemented
@@ -154,25 +188,19 @@ public class GameView extends SurfaceView implements SurfaceHolder.Callback {
      * @since 0.1
      */
     public void endgame() {
-        this.thread.setRunning(false);
+        if (this.loader != null) {
+            //surface is gone before the game could start. ends like a running game
+            this.loader.cancel();
+            this.loader = null;
+            EscapeSoundManager.getInstance(getContext()).releaseMediaPlayer();
+            ((Activity) getContext()).finish();
+            return;
+        }
+        if (this.thread != null)
+            this.thread.setRunning(false);
         this.thread = null;
     }
 
-    /**
-     * Loads the current user from the database
-     * @return User or null, if it does not exist
-     * @since 1.0
-     */
-    private User loadUser() {
-        List<User> users = EscapeDatabase.getInstance(getContext()).userDao().selectAllUsers();
-        User user;
-        if(users.size() > 0)
-            user = users.get(0);
-        else
-            user = null;
-        return user;
-    }
-
     /**
      * Deletes the current User from the database
      * @since 1.0
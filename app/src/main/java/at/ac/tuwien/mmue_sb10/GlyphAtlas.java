@@ -0,0 +1,197 @@
+/**
+ * Pre-rasterized glyphs of a monospace font
+ * @author Lukas Lidauer
+ */
+
+package at.ac.tuwien.mmue_sb10;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+import java.util.Arrays;
+
+/**
+ * This class renders the glyphs of a set of characters with a Paint into one bitmap and draws text as unscaled blits of these glyphs.
+ * That avoids text shaping and rasterizing on every frame. Only works for monospace fonts like joystix, since every glyph is placed one advance after the last.
+ * Size, colour, style and alignment are taken from the Paint. Characters without a glyph in the atlas are drawn with the Paint
+ * @since 1.1
+ * @author Lukas Lidauer
+ */
+public class GlyphAtlas {
+    public static final String DIGITS = "-0123456789";
+    private static final int COLUMNS = 16; //glyphs per row of the atlas
+
+    private final Paint paint; //paint the glyphs are rendered with. used for missing characters
+    private final Paint.Align align; //alignment of the text relative to the x coordinate
+    private final char[] chars; //characters in the atlas, sorted
+    private final float advance; //distance between two glyphs in px
+    private final int padding; //free pixels around a glyph in its cell
+    private final int baseline; //distance from the top of a cell to the baseline in px
+    private final int cell_width; //width of a glyph in the atlas in px
+    private final int cell_heigth; //heigth of a glyph in the atlas in px
+    private Bitmap atlas;
+
+    private final char[] number = new char[11]; //digits of the last number drawn with drawInt
+    private final char[] missing = new char[1]; //character that is drawn with the paint
+    private final Rect src = new Rect();
+    private final Rect dst = new Rect();
+
+    /**
+     * Renders the glyphs of all characters in chars
+     * @param paint Paint to render the glyphs with. Is copied, later changes have no effect
+     * @param chars Characters that need a glyph. Duplicates are ignored
+     * @since 1.1
+     */
+    public GlyphAtlas(Paint paint, String chars) {
+        this.paint = new Paint(paint);
+        this.align = paint.getTextAlign();
+        this.paint.setTextAlign(Paint.Align.LEFT);
+
+        char[] sorted = chars.toCharArray();
+        Arrays.sort(sorted);
+        int count = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (count == 0 || sorted[count - 1] != sorted[i])
+                sorted[count++] = sorted[i];
+        }
+        this.chars = Arrays.copyOf(sorted, count);
+
+        float advance = 0;
+        for (int i = 0; i < count; i++)
+            advance = Math.max(advance, this.paint.measureText(this.chars, i, 1));
+        this.advance = advance;
+
+        Paint.FontMetrics metrics = this.paint.getFontMetrics();
+        this.padding = (int) Math.ceil(this.paint.getStrokeWidth()) + 1;
+        this.baseline = this.padding + (int) Math.ceil(-metrics.ascent);
+        this.cell_width = (int) Math.ceil(advance) + 2 * this.padding;
+        this.cell_heigth = this.baseline + (int) Math.ceil(metrics.descent) + this.padding;
+
+        int rows = Math.max(1, (count + COLUMNS - 1) / COLUMNS);
+        this.atlas = Bitmap.createBitmap(Math.min(Math.max(1, count), COLUMNS) * this.cell_width, rows * this.cell_heigth, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(this.atlas);
+        for (int i = 0; i < count; i++) {
+            cell(i, this.src);
+            canvas.drawText(this.chars, i, 1, this.src.left + this.padding, this.src.top + this.baseline, this.paint);
+        }
+    }
+
+    /**
+     * Draws a text with the alignment of the Paint
+     * @param c    Canvas to draw onto
+     * @param text Text to draw
+     * @param x    Position of the text on the canvas according to the alignment
+     * @param y    Baseline of the text on the canvas
+     * @since 1.1
+     */
+    public void draw(Canvas c, CharSequence text, float x, float y) {
+        int count = text.length();
+        x = start(x, count);
+        for (int i = 0; i < count; i++)
+            drawChar(c, text.charAt(i), x + i * this.advance, y);
+    }
+
+    /**
+     * Draws a part of a char array with the alignment of the Paint
+     * @param c     Canvas to draw onto
+     * @param text  Characters to draw
+     * @param start Index of the first character
+     * @param count Number of characters
+     * @param x     Position of the text on the canvas according to the alignment
+     * @param y     Baseline of the text on the canvas
+     * @since 1.1
+     */
+    public void draw(Canvas c, char[] text, int start, int count, float x, float y) {
+        x = start(x, count);
+        for (int i = 0; i < count; i++)
+            drawChar(c, text[start + i], x + i * this.advance, y);
+    }
+
+    /**
+     * Draws a number without allocating a String. Needs the glyphs of DIGITS
+     * @param c     Canvas to draw onto
+     * @param value Number to draw
+     * @param x     Position of the number on the canvas according to the alignment
+     * @param y     Baseline of the number on the canvas
+     * @since 1.1
+     */
+    public void drawInt(Canvas c, int value, float x, float y) {
+        int start = this.number.length;
+        long rest = Math.abs((long) value);
+        do {
+            this.number[--start] = (char) ('0' + rest % 10);
+            rest /= 10;
+        } while (rest > 0);
+        if (value < 0)
+            this.number[--start] = '-';
+        draw(c, this.number, start, this.number.length - start, x, y);
+    }
+
+    /**
+     * @param count Number of characters
+     * @return Width of a text with count characters in px
+     * @since 1.1
+     */
+    public float measure(int count) {
+        return count * this.advance;
+    }
+
+    /**
+     * Left edge of a text according to the alignment
+     */
+    private float start(float x, int count) {
+        if (this.align == Paint.Align.CENTER)
+            return x - measure(count) / 2;
+        else if (this.align == Paint.Align.RIGHT)
+            return x - measure(count);
+        return x;
+    }
+
+    /**
+     * Draws a single character with its left edge at x
+     */
+    private void drawChar(Canvas c, char ch, float x, float y) {
+        if (ch == ' ')
+            return;
+        int index = Arrays.binarySearch(this.chars, ch);
+        if (index < 0) {
+            this.missing[0] = ch;
+            c.drawText(this.missing, 0, 1, x, y, this.paint);
+            return;
+        }
+        cell(index, this.src);
+        int left = Math.round(x) - this.padding;
+        int top = Math.round(y) - this.baseline;
+        this.dst.set(left, top, left + this.cell_width, top + this.cell_heigth);
+        c.drawBitmap(this.atlas, this.src, this.dst, null);
+    }
+
+    /**
+     * Sets r to the cell of a glyph in the atlas
+     */
+    private void cell(int index, Rect r) {
+        int x = (index % COLUMNS) * this.cell_width;
+        int y = (index / COLUMNS) * this.cell_heigth;
+        r.set(x, y, x + this.cell_width, y + this.cell_heigth);
+    }
+
+    /**
+     * @return Memory of the atlas in bytes
+     * @since 1.1
+     */
+    public long getBytes() {
+        return this.atlas == null ? 0 : (long) this.atlas.getRowBytes() * this.atlas.getHeight();
+    }
+
+    /**
+     * Recycles the atlas. The GlyphAtlas can not be used afterwards
+     * @since 1.1
+     */
+    public void release() {
+        if (this.atlas != null)
+            this.atlas.recycle();
+        this.atlas = null;
+    }
+}
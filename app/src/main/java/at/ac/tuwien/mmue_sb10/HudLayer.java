@@ -0,0 +1,70 @@
+/**
+ * Cached part of the HUD
+ * @author Lukas Lidauer
+ */
+
+package at.ac.tuwien.mmue_sb10;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.PorterDuff;
+
+/**
+ * This class holds a part of the HUD that rarely changes (pause screen, death counter) rendered into a bitmap.
+ * The layer remembers the key it was rendered with (e.g. the death count or the mute state) and only has to be rendered again if the key changes.
+ * Every other frame it is composited with a single blit and nothing is allocated
+ * @since 1.1
+ * @author Lukas Lidauer
+ */
+public class HudLayer {
+    private final Bitmap bmp; //rendered layer
+    private final Canvas canvas; //canvas to render into bmp
+    private int key; //key the layer was rendered with
+    private boolean valid; //layer has been rendered
+
+    /**
+     * Creates a new transparent HudLayer
+     * @param width  Width of the layer in px
+     * @param heigth Heigth of the layer in px
+     * @since 1.1
+     */
+    public HudLayer(int width, int heigth) {
+        this.bmp = Bitmap.createBitmap(Math.max(1, width), Math.max(1, heigth), Bitmap.Config.ARGB_8888);
+        this.canvas = new Canvas(this.bmp);
+    }
+
+    /**
+     * Checks if the layer has to be rendered again
+     * @param key Everything the content of the layer depends on, combined into an int
+     * @return The cleared canvas of the layer if it is outdated and has to be rendered, otherwise null
+     * @since 1.1
+     */
+    public Canvas begin(int key) {
+        if (this.valid && this.key == key)
+            return null;
+        this.key = key;
+        this.valid = true;
+        this.canvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+        return this.canvas;
+    }
+
+    /**
+     * Draws the layer
+     * @param c Canvas to draw onto
+     * @param x Left edge of the layer on the canvas
+     * @param y Top edge of the layer on the canvas
+     * @since 1.1
+     */
+    public void draw(Canvas c, float x, float y) {
+        c.drawBitmap(this.bmp, x, y, null);
+    }
+
+    /**
+     * Recycles the bitmap of the layer. The layer must not be used afterwards
+     * @since 1.1
+     */
+    public void release() {
+        this.bmp.recycle();
+    }
+}
@@ -0,0 +1,70 @@
+package at.ac.tuwien.mmue_sb10;
+
+import android.graphics.Canvas;
+
+/**
+ * Strategy to draw the tiles and the background of a stage
+ * @since 1.1
+ * @author Lukas Lidauer
+ */
+public interface MapRenderer {
+    /**
+     * Available strategies. The name is stored in the "map_renderer" preference
+     */
+    enum Type {
+        RECT_BLIT, //whole stage baked into one bitmap, visible part scaled with a src/dst rect blit
+        SCALED_BLIT, //whole stage baked into one bitmap, drawn onto a scaled canvas
+        TILE_LOOP, //every visible tile drawn every frame
+        CHUNKED, //stage baked in chunks around the view
+        RING_BUFFER; //pre-scaled screen-sized buffer, only new tiles are rendered
+
+        /**
+         * @return A new renderer of this type
+         * @since 1.1
+         */
+        public MapRenderer create() {
+            switch (this) {
+                case RECT_BLIT:
+                    return new BakedMapRenderer(false);
+                case SCALED_BLIT:
+                    return new BakedMapRenderer(true);
+                case TILE_LOOP:
+                    return new TileMapRenderer();
+                case CHUNKED:
+                    return new ChunkedForeground();
+                default:
+                    return new ScrollBuffer();
+            }
+        }
+    }
+
+    /**
+     * Prepares the renderer for a stage
+     * @param stage  Stage to draw
+     * @param width  Width of the view in px
+     * @param heigth Heigth of the view in px
+     * @since 1.1
+     */
+    void load(Stage stage, int width, int heigth);
+
+    /**
+     * Draws the visible part of the stage
+     * @param c         Canvas to draw onto. May be scaled to a lower render resolution
+     * @param camera    Position and size of the view
+     * @param direction Horizontal direction the view is moving in. Positive is right
+     * @since 1.1
+     */
+    void draw(Canvas c, Camera camera, float direction);
+
+    /**
+     * @return Memory of the bitmaps held by the renderer in bytes
+     * @since 1.1
+     */
+    long getBytes();
+
+    /**
+     * Recycles all bitmaps of the renderer
+     * @since 1.1
+     */
+    void release();
+}
@@ -0,0 +1,124 @@
+/**
+ * Plays the animations of the player
+ * @author Lukas Lidauer
+ */
+
+package at.ac.tuwien.mmue_sb10;
+
+import at.ac.tuwien.mmue_sb10.sim.PlayerSim;
+import at.ac.tuwien.mmue_sb10.sim.PlayerState;
+import at.ac.tuwien.mmue_sb10.util.AnimationClip;
+import at.ac.tuwien.mmue_sb10.util.AnimationSet;
+
+/**
+ * This class picks the animation clip that fits the state of the player and the frame of it that is shown.
+ * The frames of the clips come from an AnimationSet (hero_anim.txt), this class only holds the rules which clip belongs to which state.
+ * Advanced by the GameState in every simulation step
+ * @since 1.1
+ * @author Lukas Lidauer
+ */
+public class PlayerAnimator {
+    private final AnimationClip idle;
+    private final AnimationClip wakeup;
+    private final AnimationClip running;
+    private final AnimationClip jump_up;
+    private final AnimationClip jump_down;
+    private final AnimationClip start_end_jump;
+    private final AnimationClip gravity;
+    private final AnimationClip gravity_inverted;
+    private final AnimationClip dying;
+
+    private AnimationClip clip; //clip of the last update
+    public int frame; //index of the frame to draw
+    public boolean flip; //frame is drawn upside down
+    public boolean invisible; //player is not drawn. stays set until reset()
+
+    /**
+     * Creates a new PlayerAnimator
+     * @param set Clips of the player sprite sheet
+     * @throws IllegalArgumentException If a clip of the player is missing
+     * @since 1.1
+     */
+    public PlayerAnimator(AnimationSet set) {
+        this.idle = set.get("IDLE");
+        this.wakeup = set.get("WAKEUP");
+        this.running = set.get("RUNNING");
+        this.jump_up = set.get("JUMP_UP");
+        this.jump_down = set.get("JUMP_DOWN");
+        this.start_end_jump = set.get("START_END_JUMP");
+        this.gravity = set.get("GRAVITY");
+        this.gravity_inverted = set.get("GRAVITY_INVERTED");
+        this.dying = set.get("DYING");
+        this.clip = this.idle;
+    }
+
+    /**
+     * Makes the player visible again. Called when a stage is loaded or retried
+     * @since 1.1
+     */
+    public void reset() {
+        this.invisible = false;
+    }
+
+    /**
+     * Advances the animation and applies the state changes that only concern the animation (landing and taking off)
+     * @param sim            Simulation of the player
+     * @param deltaFrameTime The length of the simulation step in ms
+     * @since 1.1
+     */
+    public void update(PlayerSim sim, float deltaFrameTime) {
+        if (sim.player_last_state == PlayerState.JUMPING && sim.player_state == PlayerState.RUNNING) {
+            //LANDING
+            sim.player_state = PlayerState.START_END_JUMP;
+            sim.player_anim_time = 0;
+        }
+
+        sim.player_anim_time += deltaFrameTime;
+        AnimationClip clip = select(sim);
+        if (sim.player_state == PlayerState.START_END_JUMP && clip.isOver(sim.player_anim_time)) {
+            if (sim.player_last_state == PlayerState.JUMPING) {
+                sim.player_last_state = sim.player_state;
+                sim.player_state = PlayerState.RUNNING;
+            } else if (sim.player_last_state == PlayerState.RUNNING) {
+                sim.player_last_state = sim.player_state;
+                sim.player_state = PlayerState.JUMPING;
+            }
+            sim.player_anim_time = 0;
+        }
+
+        this.clip = clip;
+        int frame = clip.frameAt(sim.player_anim_time);
+        if (frame == AnimationClip.HIDDEN)
+            this.invisible = true;
+        else
+            this.frame = frame;
+        this.flip = clip.flip_gravity && sim.gravity < 0;
+    }
+
+    /**
+     * Picks the clip for the state of the player
+     */
+    private AnimationClip select(PlayerSim sim) {
+        switch (sim.player_state) {
+            case IDLE:
+                return this.idle;
+            case WAKEUP:
+                return this.wakeup;
+            case RUNNING:
+                return this.running;
+            case JUMPING:
+                if (sim.player_velocity_y * sim.gravity < 0)
+                    return this.jump_up;
+                else if (sim.player_velocity_y * sim.gravity > 0)
+                    return this.jump_down;
+                //at the top of a jump the clip does not change
+                return this.clip == this.jump_up ? this.jump_up : this.jump_down;
+            case START_END_JUMP:
+                return this.start_end_jump;
+            case GRAVITY:
+                return sim.gravity < 0 ? this.gravity_inverted : this.gravity;
+            default:
+                return this.dying;
+        }
+    }
+}
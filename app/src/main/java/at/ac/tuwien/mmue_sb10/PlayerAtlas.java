@@ -0,0 +1,122 @@
+/**
+ * Holds the frames of the player pre-scaled for the current stage
+ * @author Lukas Lidauer
+ */
+
+package at.ac.tuwien.mmue_sb10;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Rect;
+
+import at.ac.tuwien.mmue_sb10.sim.PlayerSim;
+
+/**
+ * This class renders all player frames into one bitmap at the size they are drawn with on the current stage.
+ * Every frame is rendered four times: as it is, mirrored for running left, upside down for inverted gravity and both.
+ * Drawing the player is a single unscaled blit of a cell of the atlas. The atlas is only rebuilt if the stage_scale changes
+ * @since 1.1
+ * @author Lukas Lidauer
+ */
+public class PlayerAtlas {
+    public static final int MIRRORED = 1; //variant facing left
+    public static final int FLIPPED = 2; //variant upside down
+    private static final int VARIANTS = 4; //normal, MIRRORED, FLIPPED, MIRRORED | FLIPPED
+    private static final int COLUMNS = 16; //frames per row of the atlas
+
+    private Bitmap atlas;
+    private float stage_scale; //scale the atlas was rendered for. 0 if there is no atlas
+    private int frames; //number of frames in the atlas
+    private int rows; //rows of one variant
+    private int cell_width; //width of a frame in the atlas in px
+    private int cell_heigth; //heigth of a frame in the atlas in px
+    private float flip_offset; //a flipped frame is moved down by this many px, so it is aligned to the bottom of the hitbox like the unflipped one to the top
+
+    private final Rect src = new Rect();
+    private final Rect dst = new Rect();
+
+    /**
+     * Renders the atlas for a stage_scale. Does nothing if the atlas already has been rendered for this scale
+     * @param frames      Frames of the player (unscaled)
+     * @param count       Number of frames to put into the atlas
+     * @param stage_scale Scale of the stage the player is drawn on
+     * @since 1.1
+     */
+    public void prepare(Bitmap[] frames, int count, float stage_scale) {
+        if (this.atlas != null && this.stage_scale == stage_scale && this.frames == count)
+            return;
+        release();
+
+        int frame_width = frames[0].getWidth();
+        int frame_heigth = frames[0].getHeight();
+        float scale = (float) PlayerSim.PLAYER_WIDTH / frame_width * stage_scale; //player frames are scaled to the width of the hitbox
+        this.stage_scale = stage_scale;
+        this.frames = count;
+        this.rows = (count + COLUMNS - 1) / COLUMNS;
+        this.cell_width = (int) Math.ceil(frame_width * scale);
+        this.cell_heigth = (int) Math.ceil(frame_heigth * scale);
+        this.flip_offset = PlayerSim.PLAYER_HEIGTH * stage_scale - frame_heigth * scale;
+        this.atlas = Bitmap.createBitmap(COLUMNS * this.cell_width, VARIANTS * this.rows * this.cell_heigth, Bitmap.Config.ARGB_8888);
+
+        Canvas canvas = new Canvas(this.atlas);
+        Matrix matrix = new Matrix();
+        for (int variant = 0; variant < VARIANTS; variant++) {
+            for (int frame = 0; frame < count; frame++) {
+                cell(frame, variant, this.src);
+                matrix.setTranslate(this.src.left, this.src.top);
+                if ((variant & MIRRORED) != 0)
+                    matrix.preTranslate(frame_width * scale, 0);
+                if ((variant & FLIPPED) != 0)
+                    matrix.preTranslate(0, frame_heigth * scale);
+                matrix.preScale((variant & MIRRORED) != 0 ? -scale : scale, (variant & FLIPPED) != 0 ? -scale : scale);
+                canvas.drawBitmap(frames[frame], matrix, null);
+            }
+        }
+    }
+
+    /**
+     * Draws a frame of the player
+     * @param c       Canvas to draw onto
+     * @param frame   Index of the frame
+     * @param variant Combination of MIRRORED and FLIPPED
+     * @param x       Left edge of the hitbox on the canvas in px
+     * @param y       Top edge of the hitbox on the canvas in px
+     * @since 1.1
+     */
+    public void draw(Canvas c, int frame, int variant, float x, float y) {
+        cell(frame, variant, this.src);
+        int left = Math.round(x);
+        int top = Math.round((variant & FLIPPED) != 0 ? y + this.flip_offset : y);
+        this.dst.set(left, top, left + this.cell_width, top + this.cell_heigth);
+        c.drawBitmap(this.atlas, this.src, this.dst, null);
+    }
+
+    /**
+     * Sets r to the cell of a frame in the atlas
+     */
+    private void cell(int frame, int variant, Rect r) {
+        int x = (frame % COLUMNS) * this.cell_width;
+        int y = (variant * this.rows + frame / COLUMNS) * this.cell_heigth;
+        r.set(x, y, x + this.cell_width, y + this.cell_heigth);
+    }
+
+    /**
+     * @return Memory of the atlas in bytes
+     * @since 1.1
+     */
+    public long getBytes() {
+        return this.atlas == null ? 0 : (long) this.atlas.getRowBytes() * this.atlas.getHeight();
+    }
+
+    /**
+     * Recycles the atlas
+     * @since 1.1
+     */
+    public void release() {
+        if (this.atlas != null)
+            this.atlas.recycle();
+        this.atlas = null;
+        this.stage_scale = 0;
+    }
+}
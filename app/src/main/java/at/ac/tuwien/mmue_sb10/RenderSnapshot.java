@@ -0,0 +1,42 @@
+/**
+ * Everything needed to draw one frame of the game
+ * @author Lukas Lidauer
+ */
+
+package at.ac.tuwien.mmue_sb10;
+
+/**
+ * This class holds the state of the game after a simulation step, as far as it is visible. It is filled by GameState.snapshot() and read by GameState.draw(),
+ * so the drawing code never touches state the simulation is changing. Snapshots are reused through a TripleBuffer and must not be changed after they are published
+ * @since 1.1
+ * @author Lukas Lidauer
+ */
+public class RenderSnapshot {
+    public long tick; //simulation steps since the GameState was created
+    public long time; //time the snapshot was taken in ns
+    public int stage_generation; //changes when a stage is loaded
+    public int attempt; //changes when the stage is retried
+
+    public float prev_pos_x; //player position x before the last simulation step
+    public float prev_pos_y; //player position y before the last simulation step
+    public float pos_x; //player position x
+    public float pos_y; //player position y
+    public float velocity_x; //horizontal velocity of the player. the player faces left if negative
+    public int player_frame; //index of the animation frame to draw
+    public boolean player_flip; //player is drawn upside down
+    public boolean player_invisible; //player is not drawn
+
+    public boolean started; //stage is started
+    public boolean paused; //game is paused
+    public boolean finished; //stage is finished
+    public boolean player_dead; //player is dead
+    public boolean player_no_input; //player reached the end of the stage, the camera stops
+    public boolean muted; //sound is muted
+    public float start_circle_radius; //radius of the circle at the start of a stage, 1 when it is fully open
+    public int fade_alpha; //alpha of the black overlay
+    public int deaths; //deaths in the current stage
+
+    public final long[] event_times = new long[16]; //event times of the applied touches no posted frame has shown yet
+    public int events; //number of used event_times
+    public long first_event; //sequence number of event_times[0]
+}
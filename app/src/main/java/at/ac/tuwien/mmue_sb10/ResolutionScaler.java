@@ -0,0 +1,128 @@
+/**
+ * Lowers the render resolution when frames take too long
+ *
+ * @author Lukas Lidauer
+ */
+
+package at.ac.tuwien.mmue_sb10;
+
+/**
+ * This class decides the size of the surface the game is rendered to. The GameThread reports the time every frame took.
+ * If the budget of a frame is missed repeatedly the resolution is lowered one step, if there is enough headroom for a few seconds it is raised again.
+ * Frames are counted in windows of WINDOW_FRAMES, the window after a change is skipped because the surface is resized asynchronously
+ * @since 1.1
+ * @author Lukas Lidauer
+ */
+public class ResolutionScaler {
+    public static final float[] LEVELS = {1f, 0.85f, 0.7f, 0.5f}; //render scales from native to lowest
+    private static final int WINDOW_FRAMES = 60; //frames that are evaluated together
+    private static final int MAX_MISSED = 6; //lower the resolution if more frames of a window missed the budget
+    private static final float HEADROOM = 0.6f; //a frame has headroom if it takes less than this share of the budget
+    private static final int HEADROOM_WINDOWS = 5; //windows in a row without a slow frame before the resolution is raised
+
+    private final boolean enabled; //false keeps the native resolution
+    private final long budget_nanos; //time a frame may take
+    private final int width; //native width of the surface in px
+    private final int heigth; //native heigth of the surface in px
+
+    private int level; //index into LEVELS
+    private int frames; //frames in the current window
+    private int missed; //frames of the current window that took longer than the budget
+    private long max_nanos; //slowest frame of the current window
+    private int headroom_windows; //windows in a row where every frame had headroom
+    private boolean skip_window; //the current window started right after a change
+
+    /**
+     * Creates a new ResolutionScaler at native resolution
+     * @param enabled      false keeps the native resolution
+     * @param budget_nanos Time a frame may take, usually the frame period of the FramePacer
+     * @param width        Native width of the surface in px
+     * @param heigth       Native heigth of the surface in px
+     * @since 1.1
+     */
+    public ResolutionScaler(boolean enabled, long budget_nanos, int width, int heigth) {
+        this.enabled = enabled;
+        this.budget_nanos = budget_nanos;
+        this.width = width;
+        this.heigth = heigth;
+    }
+
+    /**
+     * Reports the time a frame took from its start until it was posted
+     * @param nanos Time the frame took
+     * @return true if the resolution changed and the surface has to be resized
+     * @since 1.1
+     */
+    public boolean frameDone(long nanos) {
+        if (!this.enabled)
+            return false;
+        this.frames++;
+        if (nanos > this.budget_nanos)
+            this.missed++;
+        if (nanos > this.max_nanos)
+            this.max_nanos = nanos;
+        if (this.frames < WINDOW_FRAMES)
+            return false;
+
+        int old_level = this.level;
+        if (this.skip_window) {
+            this.skip_window = false;
+        } else if (this.missed > MAX_MISSED) {
+            this.headroom_windows = 0;
+            if (this.level < LEVELS.length - 1)
+                this.level++;
+        } else if (this.max_nanos < this.budget_nanos * HEADROOM) {
+            if (++this.headroom_windows >= HEADROOM_WINDOWS && this.level > 0) {
+                this.headroom_windows = 0;
+                this.level--;
+            }
+        } else {
+            this.headroom_windows = 0;
+        }
+
+        this.frames = 0;
+        this.missed = 0;
+        this.max_nanos = 0;
+        if (this.level == old_level)
+            return false;
+        this.skip_window = true;
+        return true;
+    }
+
+    /**
+     * @return Current render scale. 1 is the native resolution
+     * @since 1.1
+     */
+    public float getScale() {
+        return LEVELS[this.level];
+    }
+
+    /**
+     * @return true if the surface is rendered at its native size
+     * @since 1.1
+     */
+    public boolean isNative() {
+        return this.level == 0;
+    }
+
+    /**
+     * @return Width of the surface at the current render scale
+     * @since 1.1
+     */
+    public int getWidth() {
+        return Math.round(this.width * getScale());
+    }
+
+    /**
+     * @return Heigth of the surface at the current render scale
+     * @since 1.1
+     */
+    public int getHeigth() {
+        return Math.round(this.heigth * getScale());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("render scale %.2f (%dx%d)", getScale(), getWidth(), getHeigth());
+    }
+}
@@ -0,0 +1,204 @@
+/**
+ * Keeps the visible part of a stage in a pre-scaled offscreen buffer that is only updated where the view moved
+ * @author Lukas Lidauer
+ */
+
+package at.ac.tuwien.mmue_sb10;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Rect;
+
+/**
+ * This class holds a screen-sized ring buffer of scaled tiles. Tile (x, y) always lives at ((x mod columns) * tile_px, (y mod rows) * tile_px),
+ * so when the view scrolls only the newly exposed columns and rows have to be rendered. The screen is composed from at most four unscaled blits.
+ * Requires a stage_scale that makes 24 * stage_scale an integer
+ * @since 1.1
+ * @author Lukas Lidauer
+ */
+public class ScrollBuffer implements MapRenderer {
+    private Stage stage;
+    private int tile_px; //size of a scaled tile in px
+    private int columns; //tile columns in the buffer
+    private int rows; //tile rows in the buffer
+    private Bitmap buffer;
+    private final Canvas buffer_canvas = new Canvas();
+
+    private boolean valid; //buffer holds the window starting at window_column, window_row
+    private int window_column; //first tile column held by the buffer
+    private int window_row; //first tile row held by the buffer
+    private int rendered_tiles; //tiles rendered during the last draw
+
+    private final Rect src = new Rect();
+    private final Rect dst = new Rect();
+
+    /**
+     * Prepares the buffer for a stage. The buffer bitmap is only reallocated if its size changes
+     * @param stage  Stage to draw
+     * @param width  Width of the view in px
+     * @param heigth Heigth of the view in px
+     * @since 1.1
+     */
+    @Override
+    public void load(Stage stage, int width, int heigth) {
+        this.stage = stage;
+        this.tile_px = Math.round(24 * stage.stage_scale);
+        this.columns = (width + this.tile_px - 1) / this.tile_px + 1;
+        this.rows = (heigth + this.tile_px - 1) / this.tile_px + 1;
+        int buffer_width = this.columns * this.tile_px;
+        int buffer_heigth = this.rows * this.tile_px;
+        if (this.buffer == null || this.buffer.getWidth() != buffer_width || this.buffer.getHeight() != buffer_heigth) {
+            if (this.buffer != null)
+                this.buffer.recycle();
+            this.buffer = Bitmap.createBitmap(buffer_width, buffer_heigth, Bitmap.Config.ARGB_8888);
+        }
+        this.valid = false;
+    }
+
+    /**
+     * Draws the view of the stage at the position of the camera
+     * @since 1.1
+     */
+    @Override
+    public void draw(Canvas c, Camera camera, float direction) {
+        draw(c, (int) camera.trans_x, (int) camera.trans_y, camera.width, camera.heigth);
+    }
+
+    /**
+     * Draws the view of the stage. Renders the tiles that scrolled into view into the buffer first
+     * @param c      Canvas to draw onto. The buffer is copied unscaled unless the canvas is scaled to a lower render resolution
+     * @param view_x Left edge of the view in scaled px
+     * @param view_y Top edge of the view in scaled px
+     * @param width  Width of the view in px
+     * @param heigth Heigth of the view in px
+     * @since 1.1
+     */
+    public void draw(Canvas c, int view_x, int view_y, int width, int heigth) {
+        if (this.buffer == null || width > (this.columns - 1) * this.tile_px || heigth > (this.rows - 1) * this.tile_px)
+            load(this.stage, width, heigth);
+
+        scrollTo(floorDiv(view_x, this.tile_px), floorDiv(view_y, this.tile_px));
+
+        int buffer_width = this.columns * this.tile_px;
+        int buffer_heigth = this.rows * this.tile_px;
+        int bx = view_x - floorDiv(view_x, buffer_width) * buffer_width;
+        int by = view_y - floorDiv(view_y, buffer_heigth) * buffer_heigth;
+        int w = Math.min(width, buffer_width - bx);
+        int h = Math.min(heigth, buffer_heigth - by);
+
+        blit(c, bx, by, w, h, 0, 0);
+        if (w < width)
+            blit(c, 0, by, width - w, h, w, 0);
+        if (h < heigth)
+            blit(c, bx, 0, w, heigth - h, 0, h);
+        if (w < width && h < heigth)
+            blit(c, 0, 0, width - w, heigth - h, w, h);
+    }
+
+    /**
+     * @return Number of tiles rendered into the buffer during the last draw
+     * @since 1.1
+     */
+    public int getRenderedTiles() {
+        return this.rendered_tiles;
+    }
+
+    /**
+     * @return Memory of the buffer in bytes
+     * @since 1.1
+     */
+    @Override
+    public long getBytes() {
+        return this.buffer == null ? 0 : (long) this.buffer.getRowBytes() * this.buffer.getHeight();
+    }
+
+    /**
+     * Recycles the buffer
+     * @since 1.1
+     */
+    @Override
+    public void release() {
+        if (this.buffer != null)
+            this.buffer.recycle();
+        this.buffer = null;
+        this.valid = false;
+    }
+
+    /**
+     * Moves the window of the buffer and renders the tiles that are new in it
+     */
+    private void scrollTo(int column, int row) {
+        this.rendered_tiles = 0;
+        int dx = column - this.window_column;
+        int dy = row - this.window_row;
+        if (!this.valid || Math.abs(dx) >= this.columns || Math.abs(dy) >= this.rows) {
+            this.valid = true;
+            this.window_column = column;
+            this.window_row = row;
+            render(column, row, column + this.columns, row + this.rows);
+            return;
+        }
+        this.window_column = column;
+        this.window_row = row;
+        if (dx > 0)
+            render(column + this.columns - dx, row, column + this.columns, row + this.rows);
+        else if (dx < 0)
+            render(column, row, column - dx, row + this.rows);
+        if (dy > 0)
+            render(column, row + this.rows - dy, column + this.columns, row + this.rows);
+        else if (dy < 0)
+            render(column, row, column + this.columns, row - dy);
+    }
+
+    /**
+     * Renders a rectangle of tiles into the buffer. Splits it where it wraps around the edges of the buffer
+     */
+    private void render(int left, int top, int right, int bottom) {
+        int wrap_x = (floorDiv(left, this.columns) + 1) * this.columns;
+        int wrap_y = (floorDiv(top, this.rows) + 1) * this.rows;
+        renderBlock(left, top, Math.min(right, wrap_x), Math.min(bottom, wrap_y));
+        if (right > wrap_x)
+            renderBlock(wrap_x, top, right, Math.min(bottom, wrap_y));
+        if (bottom > wrap_y)
+            renderBlock(left, wrap_y, Math.min(right, wrap_x), bottom);
+        if (right > wrap_x && bottom > wrap_y)
+            renderBlock(wrap_x, wrap_y, right, bottom);
+    }
+
+    /**
+     * Renders a rectangle of tiles that is contiguous in the buffer
+     */
+    private void renderBlock(int left, int top, int right, int bottom) {
+        int slot_x = (left - floorDiv(left, this.columns) * this.columns) * this.tile_px;
+        int slot_y = (top - floorDiv(top, this.rows) * this.rows) * this.tile_px;
+        this.buffer_canvas.setBitmap(this.buffer);
+        this.buffer_canvas.save();
+        this.buffer_canvas.clipRect(slot_x, slot_y, slot_x + (right - left) * this.tile_px, slot_y + (bottom - top) * this.tile_px);
+        this.buffer_canvas.drawColor(Color.BLACK);
+        this.buffer_canvas.translate(slot_x - left * this.tile_px, slot_y - top * this.tile_px);
+        this.buffer_canvas.scale(this.tile_px / 24f, this.tile_px / 24f);
+        //tiles outside of the stage are never visible, the camera stays inside the stage
+        int l = Math.max(left, 0), t = Math.max(top, 0), r = Math.min(right, this.stage.width), b = Math.min(bottom, this.stage.heigth);
+        if (l < r && t < b) {
+            this.stage.drawRegion(this.buffer_canvas, l, t, r, b);
+            this.rendered_tiles += (r - l) * (b - t);
+        }
+        this.buffer_canvas.restore();
+        this.buffer_canvas.setBitmap(null);
+    }
+
+    private void blit(Canvas c, int src_x, int src_y, int w, int h, int dst_x, int dst_y) {
+        this.src.set(src_x, src_y, src_x + w, src_y + h);
+        this.dst.set(dst_x, dst_y, dst_x + w, dst_y + h);
+        c.drawBitmap(this.buffer, this.src, this.dst, null);
+    }
+
+    /**
+     * Division that rounds towards negative infinity (Math.floorDiv needs API 24)
+     */
+    private static int floorDiv(int a, int b) {
+        int q = a / b;
+        return (a % b != 0 && (a ^ b) < 0) ? q - 1 : q;
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ * Runs the simulation apart from the render loop
+ *
+ * @author Lukas Lidauer
+ */
+
+package at.ac.tuwien.mmue_sb10;
+
+import java.util.concurrent.locks.LockSupport;
+
+import at.ac.tuwien.mmue_sb10.sim.PlayerSim;
+import at.ac.tuwien.mmue_sb10.util.TripleBuffer;
+
+/**
+ * This class advances the GameState in fixed steps on its own thread and publishes a RenderSnapshot after every step.
+ * Used by the GameThread in two-thread mode, so a slow frame does not delay the physics or the inputs and the next step is simulated while the last frame is rasterized
+ * @since 1.1
+ * @author Lukas Lidauer
+ */
+public class SimulationThread extends Thread {
+    private static final long MAX_LAG_NANOS = 250_000_000L; //if the steps fall further behind, the missing time is skipped so a stall can not pile up endless steps
+
+    private final GameState state;
+    private final TripleBuffer<RenderSnapshot> snapshots;
+
+    /**
+     * Creates a new SimulationThread
+     * @param state     GameState that is simulated
+     * @param snapshots Receives a snapshot of the state after every step
+     * @since 1.1
+     */
+    public SimulationThread(GameState state, TripleBuffer<RenderSnapshot> snapshots) {
+        super("SimulationThread");
+        this.state = state;
+        this.snapshots = snapshots;
+    }
+
+    /**
+     * Simulates one step every PlayerSim.STEP_NANOS until the GameState is not running anymore. Inputs are applied right before a step
+     * @since 1.1
+     */
+    @Override
+    public void run() {
+        long next_step = System.nanoTime();
+        try {
+            while (this.state.running) {
+                long remaining;
+                while ((remaining = next_step - System.nanoTime()) > 0 && this.state.running)
+                    LockSupport.parkNanos(remaining);
+
+                this.state.processInput();
+                this.state.update(PlayerSim.STEP_MS);
+                this.state.snapshot(this.snapshots.getBack());
+                this.snapshots.publish();
+
+                next_step += PlayerSim.STEP_NANOS;
+                long now = System.nanoTime();
+                if (now - next_step > MAX_LAG_NANOS)
+                    next_step = now;
+            }
+        } catch (NullPointerException npe) {
+            npe.printStackTrace();
+            this.state.running = false;
+        }
+    }
+}
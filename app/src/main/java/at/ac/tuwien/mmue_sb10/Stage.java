@@ -6,19 +6,28 @@
 package at.ac.tuwien.mmue_sb10;
 
 import android.content.Context;
+import android.content.res.AssetFileDescriptor;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.BitmapShader;
 import android.graphics.Canvas;
-import android.graphics.Color;
 import android.graphics.Paint;
-import android.graphics.Rect;
-import android.graphics.RectF;
 import android.graphics.Shader;
 
-import java.io.BufferedReader;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.zip.CRC32;
+
+import at.ac.tuwien.mmue_sb10.persistence.ForegroundCache;
+
+import at.ac.tuwien.mmue_sb10.sim.CompiledStage;
+import at.ac.tuwien.mmue_sb10.sim.StageFile;
+import at.ac.tuwien.mmue_sb10.sim.StageGrid;
+import at.ac.tuwien.mmue_sb10.util.BitmapCache;
 
 /**
  * This class handles stages (levels) and their variables
@@ -26,24 +35,28 @@ import java.io.InputStreamReader;
  * @author Lukas Lidauer
  */
 public class Stage {
+    public int level; //ID of the stage
     public String stage_name; //name of the stage
     public int player_start_x, player_start_y; //starting position of player
     public float player_velocity_x; //how far player moves forward
-    public float stage_scale; //scaling of the stage. scale * density = stage_scale
-    public int[][] stage_collision; //array of tile behavior
-    //public int[][] stage_tiles; //array of the tile numbers
-    public Bitmap stage_foreground; //stage tiles put together (scaled)
-    private Bitmap stage_background; //stage background (scaled)
+    public float stage_scale; //scaling of the stage. scale * density = stage_scale, snapped to whole px per tile
+    public StageGrid stage_grid; //tile behaviors used for collision detection
+    public int width; //width of the stage in tiles
+    public int heigth; //heigth of the stage in tiles
+    private short[] stage_tiles; //tile numbers, one row after another
+    private Bitmap stage_background; //stage background (scaled). decoded when it is drawn the first time
+    private int background_id; //resource id of the background drawable
+    private static final HashMap<Integer, Integer> resource_hashes = new HashMap<>(); //CRC of every resource file hashed in this process
+    private int content_hash; //hash of the tileset, the background and the tiles. identifies the composited foreground
+    private boolean content_hashed; //content_hash belongs to the loaded stage
     public int current_music_id; //resource id of the bg music
 
     public Bitmap[] tiles_textures; //all tiles of the tileset in 24x24 format
-    private int[] tiles_collision; //all tile behaviors of the tileset. uses same id as tiles_textures
-    private int stage_width_tiles; //width in tiles
-    private int stage_heigth_tiles; //heigth in tiles
     private float density; //density of the display
 
     private Paint background_paint;
     private Context context; //context of the app to get resources
+    public final ForegroundCache foreground_cache; //composited foregrounds of earlier loads
 
     /**
      * Initializes the stage and loads the tileset from resources
@@ -55,98 +68,162 @@ public class Stage {
         this.density = density;
         this.background_paint = new Paint();
         this.background_paint.setAntiAlias(true);
+        this.foreground_cache = new ForegroundCache(context);
         loadTileset();
     }
 
     /**
-     * Loads the tileset from the resources and splits it in 24x24 tiles
+     * Gets the tileset split in 24x24 tiles from the BitmapCache. Tiles are numbered top to bottom, then left to right
      */
     private void loadTileset() {
-        BitmapFactory.Options o = new BitmapFactory.Options();
-        o.inScaled = false;
-        Bitmap tileset = BitmapFactory.decodeResource(context.getResources(), R.drawable.tileset24, o);
-        tiles_collision = context.getResources().getIntArray(R.array.collision);
-        int h = tileset.getWidth() / 24;
-        int v = tileset.getHeight() / 24;
-        tiles_textures = new Bitmap[h * v];
-        //this.stage_scale = this.density * 1.3f;
-        int tilenumber = 0;
-        for (int x = 0; x < h; x++) {
-            for (int y = 0; y < v; y++) {
-                tiles_textures[tilenumber] = Bitmap.createBitmap(tileset, x * 24, y * 24, 24, 24);
-                //tiles_textures[tilenumber] = Bitmap.createScaledBitmap(Bitmap.createBitmap(tileset, x * 24, y * 24, 24, 24), (int)(24 * this.stage_scale), (int)(24 * this.stage_scale), false);
-                tilenumber++;
-            }
-        }
+        tiles_textures = BitmapCache.getInstance(context).acquireFrames(R.drawable.tileset24, 24, 24, true);
     }
 
     /**
-     * Loads stage from the assets folder
+     * Loads stage from the assets folder.
+     * The stages are compiled to stageN.bin by the compileStages task and stored uncompressed, so the file is mapped instead of read
      * @param level ID of the stage to load
      */
     public void load(int level) {
-        Canvas canvas = null; //draws on terrain bitmap
+        CompiledStage file;
         try {
-            BufferedReader reader = new BufferedReader(new InputStreamReader(context.getAssets().open("stage" + level + ".txt")));
-            String line;
-            while ((line = reader.readLine()) != null) {
-                switch (line) {
-                    case "#info":
-                        if(level > 0)
-                            this.stage_name = context.getResources().getString(context.getResources().getIdentifier("stage" + level, "string", context.getPackageName()));
-                        else
-                            this.stage_name = context.getResources().getString(context.getResources().getIdentifier("stage_" + Math.abs(level), "string", context.getPackageName()));
-                        line = reader.readLine();
-                        this.stage_scale = this.density * Float.parseFloat(line.split("=")[1]);
-                        line = reader.readLine();
-                        this.current_music_id = context.getResources().getIdentifier(line.split("=")[1], "raw", context.getPackageName());
-                        line = reader.readLine();
-                        BitmapFactory.Options o = new BitmapFactory.Options();
-                        o.inScaled = false;
-                        this.stage_background = BitmapFactory.decodeResource(context.getResources(), context.getResources().getIdentifier(line.split("=")[1], "drawable", context.getPackageName()), o);
-                        this.stage_background = Bitmap.createScaledBitmap(this.stage_background, (int)(this.stage_background.getWidth() * this.stage_scale), (int)(this.stage_background.getHeight() * this.stage_scale), false);
-                        this.background_paint.setShader(new BitmapShader(this.stage_background, Shader.TileMode.REPEAT, Shader.TileMode.REPEAT));
-                        break;
-                    case "#player":
-                        line = reader.readLine();
-                        this.player_start_x = Integer.parseInt(line.split("=")[1]);
-                        line = reader.readLine();
-                        this.player_start_y = Integer.parseInt(line.split("=")[1]);
-                        line = reader.readLine();
-                        this.player_velocity_x = Float.parseFloat(line.split("=")[1]);
-                        break;
-                    case "#size":
-                        line = reader.readLine();
-                        this.stage_width_tiles = Integer.parseInt(line.split("=")[1]);
-                        line = reader.readLine();
-                        this.stage_heigth_tiles = Integer.parseInt(line.split("=")[1]);
-                        //this.stage_tiles = new int[this.stage_width_tiles][this.stage_heigth_tiles];
-                        this.stage_foreground = Bitmap.createBitmap(stage_width_tiles * 24, stage_heigth_tiles * 24, Bitmap.Config.ARGB_8888);
-                        canvas = new Canvas(this.stage_foreground);
-                        this.stage_collision = new int[stage_width_tiles][stage_heigth_tiles];
-                        break;
-                    case "#tiles":
-                        canvas.drawRect(0, 0, this.stage_foreground.getWidth(), this.stage_foreground.getHeight(), this.background_paint);
-                        for (int y = 0; y < this.stage_heigth_tiles; y++) {
-                            line = reader.readLine();
-                            String[] tilesInLine = line.split(" ");
-                            for (int x = 0; x < tilesInLine.length; x++) {
-                                if (!tilesInLine[x].equals("--")) {
-                                    int tile_id = Integer.parseInt(tilesInLine[x]);
-                                    canvas.drawBitmap(tiles_textures[tile_id], null, new RectF(x * 24, y * 24, x * 24 + 24, y * 24 + 24), null);
-                                    stage_collision[x][y] = tiles_collision[tile_id];
-                                    //this.stage_tiles[x][y] = tile_id;
-                                } /*else {
-                                    this.stage_tiles[x][y] = -1;
-                                }*/
-                            }
-                        }
-                        break;
-                }
-            }
-            reader.close();
+            file = readCompiledStage("stage" + level + ".bin");
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+
+        if(level > 0)
+            this.stage_name = context.getResources().getString(context.getResources().getIdentifier("stage" + level, "string", context.getPackageName()));
+        else
+            this.stage_name = context.getResources().getString(context.getResources().getIdentifier("stage_" + Math.abs(level), "string", context.getPackageName()));
+        this.stage_scale = Math.round(24 * this.density * file.scale) / 24f; //snapped so a scaled tile has a whole number of px
+        this.current_music_id = context.getResources().getIdentifier(file.music, "raw", context.getPackageName());
+        this.background_id = context.getResources().getIdentifier(file.background, "drawable", context.getPackageName());
+        BitmapCache.getInstance(context).release(this.stage_background);
+        this.stage_background = null;
+
+        this.player_start_x = file.player_start_x;
+        this.player_start_y = file.player_start_y;
+        this.player_velocity_x = file.player_velocity_x;
+
+        this.width = file.width;
+        this.heigth = file.heigth;
+        this.stage_tiles = file.tiles;
+        this.stage_grid = file.grid;
+        this.level = level;
+        this.content_hashed = false;
+    }
+
+    /**
+     * Decodes the background now instead of when it is drawn the first time
+     * @since 1.1
+     */
+    public void prepareBackground() {
+        if (this.stage_background == null)
+            loadBackground();
+    }
+
+    /**
+     * Decodes the background and scales it by the stage_scale
+     */
+    private void loadBackground() {
+        this.stage_background = BitmapCache.getInstance(context).acquire(this.background_id, this.stage_scale, false);
+        this.background_paint.setShader(new BitmapShader(this.stage_background, Shader.TileMode.REPEAT, Shader.TileMode.REPEAT));
+    }
+
+    /**
+     * Gives the tileset and the background back to the BitmapCache. The stage must not be drawn afterwards
+     * @since 1.1
+     */
+    public void release() {
+        BitmapCache cache = BitmapCache.getInstance(context);
+        cache.release(this.tiles_textures);
+        cache.release(this.stage_background);
+        this.tiles_textures = null;
+        this.stage_background = null;
+        this.background_paint.setShader(null);
+    }
+
+    /**
+     * Hashes the content of the stage the first time it is needed, since only renderers that use the foreground_cache need the key
+     * @return Key of the composited foreground of the loaded stage in the foreground_cache
+     * @since 1.1
+     */
+    public String getForegroundKey() {
+        if (!this.content_hashed) {
+            this.content_hash = 31 * (31 * resourceHash(R.drawable.tileset24) + resourceHash(this.background_id)) + Arrays.hashCode(this.stage_tiles);
+            this.content_hashed = true;
+        }
+        return ForegroundCache.key(this.level, this.content_hash, this.stage_scale);
+    }
+
+    /**
+     * Computes the CRC of the file of a resource. Used to notice changed assets. Every resource is only read once per process
+     * @param id Resource id
+     * @return CRC of the resource, 0 if it can not be read
+     */
+    private int resourceHash(int id) {
+        synchronized (resource_hashes) {
+            Integer hash = resource_hashes.get(id);
+            if (hash != null)
+                return hash;
+        }
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[4096];
+        try (InputStream in = context.getResources().openRawResource(id)) {
+            int read;
+            while ((read = in.read(buffer)) != -1)
+                crc.update(buffer, 0, read);
         } catch (IOException e) {
             e.printStackTrace();
+            return 0;
+        }
+        synchronized (resource_hashes) {
+            resource_hashes.put(id, (int) crc.getValue());
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Maps a compiled stage from the assets folder and reads it
+     * @param name Name of the asset
+     * @return The stage
+     * @throws IOException If the asset does not exist or is compressed
+     * @since 1.1
+     */
+    private CompiledStage readCompiledStage(String name) throws IOException {
+        AssetFileDescriptor fd = context.getAssets().openFd(name);
+        FileInputStream in = fd.createInputStream();
+        try {
+            FileChannel channel = in.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, fd.getStartOffset(), fd.getLength());
+            return CompiledStage.read(buffer);
+        } finally {
+            in.close();
+            fd.close();
+        }
+    }
+
+    /**
+     * Draws the background and the tiles of a region of the stage. Coordinates on the canvas are unscaled stage pixels
+     * @param canvas Canvas to draw onto
+     * @param left   First column of tiles
+     * @param top    First row of tiles
+     * @param right  Column after the last column of tiles
+     * @param bottom Row after the last row of tiles
+     * @since 1.1
+     */
+    public void drawRegion(Canvas canvas, int left, int top, int right, int bottom) {
+        if (this.stage_background == null)
+            loadBackground();
+        canvas.drawRect(left * 24, top * 24, right * 24, bottom * 24, this.background_paint);
+        for (int y = top; y < bottom; y++) {
+            for (int x = left; x < right; x++) {
+                int tile = this.stage_tiles[y * this.width + x];
+                if (tile != StageFile.NO_TILE)
+                    canvas.drawBitmap(this.tiles_textures[tile], x * 24, y * 24, null);
+            }
         }
     }
 }
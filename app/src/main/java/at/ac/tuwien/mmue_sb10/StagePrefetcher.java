@@ -0,0 +1,158 @@
+/**
+ * Loads the next stage while the finish screen is shown
+ * @author Lukas Lidauer
+ */
+
+package at.ac.tuwien.mmue_sb10;
+
+import android.content.Context;
+import android.util.Log;
+
+import at.ac.tuwien.mmue_sb10.util.Concurrency;
+
+/**
+ * This class loads and composites a stage ahead of time on the loader executor, so the next GameState can take it over without a load pause.
+ * At most one prefetched stage is held: a new prefetch replaces the last one, taking a stage removes it.
+ * Since GameLoader runs on the same executor, a game that starts while the prefetch is running waits for it instead of loading the stage a second time
+ * @since 1.1
+ * @author Lukas Lidauer
+ */
+public class StagePrefetcher {
+    private static final String TAG = StagePrefetcher.class.getSimpleName();
+    private static StagePrefetcher sInstance;
+
+    /**
+     * A stage loaded for a view and the map renderer that has composited it
+     */
+    private static class Entry {
+        final int level;
+        final float density;
+        final int width, heigth; //size of the view the renderer is loaded for
+        final MapRenderer.Type type;
+        Stage stage;
+        MapRenderer renderer;
+        boolean stage_taken; //stage has been taken, the renderer is still waiting for it
+
+        Entry(int level, float density, int width, int heigth, MapRenderer.Type type) {
+            this.level = level;
+            this.density = density;
+            this.width = width;
+            this.heigth = heigth;
+            this.type = type;
+        }
+
+        boolean matches(int level, float density) {
+            return this.level == level && this.density == density;
+        }
+
+        void release() {
+            if (this.renderer != null)
+                this.renderer.release();
+            this.renderer = null;
+            if (this.stage != null && !this.stage_taken)
+                this.stage.release();
+            this.stage = null;
+        }
+    }
+
+    private final Context context;
+    private Entry requested; //last requested prefetch. the only one that is kept when it is done
+    private Entry ready; //prefetched stage, not taken yet
+
+    private StagePrefetcher(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    /**
+     * @param context Context to construct the StagePrefetcher if there is no instance yet
+     * @return The process wide StagePrefetcher
+     * @since 1.1
+     */
+    public static synchronized StagePrefetcher getInstance(Context context) {
+        if (sInstance == null)
+            sInstance = new StagePrefetcher(context);
+        return sInstance;
+    }
+
+    /**
+     * Starts loading a stage on the loader executor. A stage that is still prefetched or not taken yet is dropped
+     * @param level   ID of the stage
+     * @param density Density of the display
+     * @param width   Width of the view in px
+     * @param heigth  Heigth of the view in px
+     * @param type    Map renderer that composites the stage
+     * @since 1.1
+     */
+    public void prefetch(int level, float density, int width, int heigth, MapRenderer.Type type) {
+        Entry entry = new Entry(level, density, width, heigth, type);
+        synchronized (this) {
+            if (this.ready != null)
+                this.ready.release();
+            this.ready = null;
+            this.requested = entry;
+        }
+        Concurrency.executeLoading(() -> load(entry));
+    }
+
+    private void load(Entry entry) {
+        synchronized (this) {
+            if (this.requested != entry)
+                return; //replaced before it started
+        }
+        long start = System.nanoTime();
+        Stage stage = new Stage(this.context, entry.density);
+        stage.load(entry.level);
+        stage.prepareBackground();
+        MapRenderer renderer = entry.type.create();
+        renderer.load(stage, entry.width, entry.heigth);
+        Log.i(TAG, "stage" + entry.level + " prefetched in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+
+        synchronized (this) {
+            entry.stage = stage;
+            entry.renderer = renderer;
+            if (this.requested != entry) {
+                entry.release();
+                return;
+            }
+            this.requested = null;
+            this.ready = entry;
+        }
+    }
+
+    /**
+     * Takes the prefetched stage. Afterwards it is not held by the prefetcher anymore
+     * @param level   ID of the stage
+     * @param density Density of the display
+     * @return The loaded stage or null if it has not been prefetched
+     * @since 1.1
+     */
+    public synchronized Stage takeStage(int level, float density) {
+        if (this.ready == null || this.ready.stage_taken || !this.ready.matches(level, density))
+            return null;
+        this.ready.stage_taken = true;
+        return this.ready.stage;
+    }
+
+    /**
+     * Takes the map renderer that has composited a stage taken with takeStage
+     * @param stage  Stage taken from the prefetcher
+     * @param width  Width of the view in px
+     * @param heigth Heigth of the view in px
+     * @param type   Map renderer that is needed
+     * @return The loaded map renderer or null if it does not fit
+     * @since 1.1
+     */
+    public synchronized MapRenderer takeRenderer(Stage stage, int width, int heigth, MapRenderer.Type type) {
+        Entry entry = this.ready;
+        if (entry == null || !entry.stage_taken || entry.stage != stage)
+            return null;
+        this.ready = null;
+        if (entry.width != width || entry.heigth != heigth || entry.type != type) {
+            entry.release();
+            return null;
+        }
+        MapRenderer renderer = entry.renderer;
+        entry.renderer = null;
+        return renderer;
+    }
+}
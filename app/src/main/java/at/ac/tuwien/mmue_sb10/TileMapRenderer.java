@@ -0,0 +1,40 @@
+package at.ac.tuwien.mmue_sb10;
+
+import android.graphics.Canvas;
+
+/**
+ * Draws every visible tile onto the scaled canvas each frame. Needs no memory besides the tileset
+ * @since 1.1
+ * @author Lukas Lidauer
+ */
+public class TileMapRenderer implements MapRenderer {
+    private Stage stage;
+
+    @Override
+    public void load(Stage stage, int width, int heigth) {
+        this.stage = stage;
+    }
+
+    @Override
+    public void draw(Canvas c, Camera camera, float direction) {
+        int startx = Math.max(0, (int) (camera.trans_x_unscaled / 24));
+        int starty = Math.max(0, (int) (camera.trans_y_unscaled / 24));
+        int endx = Math.min(this.stage.width, (int) ((camera.trans_x_unscaled + camera.width / this.stage.stage_scale) / 24) + 1);
+        int endy = Math.min(this.stage.heigth, (int) ((camera.trans_y_unscaled + camera.heigth / this.stage.stage_scale) / 24) + 1);
+
+        c.save();
+        c.scale(this.stage.stage_scale, this.stage.stage_scale);
+        c.translate(-camera.trans_x_unscaled, -camera.trans_y_unscaled);
+        this.stage.drawRegion(c, startx, starty, endx, endy);
+        c.restore();
+    }
+
+    @Override
+    public long getBytes() {
+        return 0;
+    }
+
+    @Override
+    public void release() {
+    }
+}
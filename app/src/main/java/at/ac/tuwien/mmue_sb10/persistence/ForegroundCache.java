@@ -0,0 +1,147 @@
+package at.ac.tuwien.mmue_sb10.persistence;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import at.ac.tuwien.mmue_sb10.util.Concurrency;
+
+/**
+ * Stores composited stage foregrounds as raw pixels in the app's cache directory, so a stage does not have to be put together from its tiles again.
+ * A file is found by a key made of the stage ID, a hash of the stage content (tileset, background, tiles) and the stage_scale,
+ * so changed assets or another density never hit an old file. Files of other versions of the format are deleted
+ * @since 1.1
+ * @author Lukas Lidauer
+ */
+public class ForegroundCache {
+    private static final String TAG = ForegroundCache.class.getSimpleName();
+    private static final String DIRECTORY = "foregrounds";
+    private static final int VERSION = 1; //version of the file format
+    private static final int HEADER_BYTES = 12; //width, heigth and bytes per row
+
+    private static boolean swept; //files of other versions have been deleted in this process
+
+    private final File dir; //directory of the current version
+
+    /**
+     * Creates the cache. The files of other versions are deleted in the background, once per process
+     * @param context Context of the application
+     * @since 1.1
+     */
+    public ForegroundCache(Context context) {
+        File root = new File(context.getCacheDir(), DIRECTORY);
+        this.dir = new File(root, "v" + VERSION);
+        synchronized (ForegroundCache.class) {
+            if (swept)
+                return;
+            swept = true;
+        }
+        Concurrency.executeAsync(() -> {
+            File[] versions = root.listFiles();
+            if (versions != null) {
+                for (File version : versions) {
+                    if (!version.equals(this.dir))
+                        delete(version);
+                }
+            }
+        });
+    }
+
+    /**
+     * Builds the key of a foreground
+     * @param level       ID of the stage
+     * @param hash        Hash of everything the foreground is composited from
+     * @param stage_scale Scale of the stage
+     * @return Key of the foreground
+     * @since 1.1
+     */
+    public static String key(int level, int hash, float stage_scale) {
+        return "stage" + level + "_" + Integer.toHexString(hash) + "_" + Integer.toHexString(Float.floatToIntBits(stage_scale));
+    }
+
+    /**
+     * Copies a cached foreground into a bitmap. The file is mapped, so there is no copy on the heap
+     * @param key    Key of the foreground
+     * @param bitmap ARGB_8888 bitmap with the size of the foreground
+     * @return true if the foreground was cached, false if it has to be composited
+     * @since 1.1
+     */
+    public boolean read(String key, Bitmap bitmap) {
+        File file = new File(this.dir, key + ".raw");
+        if (!file.isFile())
+            return false;
+        try (FileInputStream in = new FileInputStream(file)) {
+            MappedByteBuffer buffer = in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+            buffer.order(ByteOrder.nativeOrder());
+            int pixels = bitmap.getRowBytes() * bitmap.getHeight();
+            if (buffer.getInt() != bitmap.getWidth() || buffer.getInt() != bitmap.getHeight() || buffer.getInt() != bitmap.getRowBytes()
+                    || buffer.remaining() != pixels) {
+                Log.w(TAG, "Deleting foreground with wrong size " + file);
+                file.delete();
+                return false;
+            }
+            bitmap.copyPixelsFromBuffer(buffer);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Could not read foreground " + file, e);
+            return false;
+        }
+    }
+
+    /**
+     * Stores a foreground. The pixels are copied into the file right away, it is flushed and renamed in the background.
+     * Older foregrounds of the same stage are deleted
+     * @param key    Key of the foreground
+     * @param level  ID of the stage
+     * @param bitmap Composited ARGB_8888 foreground
+     * @since 1.1
+     */
+    public void write(String key, int level, Bitmap bitmap) {
+        if (!this.dir.isDirectory() && !this.dir.mkdirs()) {
+            Log.e(TAG, "Could not create " + this.dir);
+            return;
+        }
+        //the pixels are copied into a mapping of a temporary file, so a partly written foreground is never read and no copy is kept on the heap
+        File tmp = new File(this.dir, key + ".tmp");
+        MappedByteBuffer buffer;
+        try (RandomAccessFile file = new RandomAccessFile(tmp, "rw")) {
+            buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + (long) bitmap.getRowBytes() * bitmap.getHeight());
+            buffer.order(ByteOrder.nativeOrder());
+            buffer.putInt(bitmap.getWidth()).putInt(bitmap.getHeight()).putInt(bitmap.getRowBytes());
+            bitmap.copyPixelsToBuffer(buffer);
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Could not write foreground", e);
+            tmp.delete();
+            return;
+        }
+        Concurrency.executeAsync(() -> {
+            buffer.force();
+            File[] files = this.dir.listFiles();
+            if (files != null) {
+                for (File old : files) {
+                    if (old.getName().startsWith("stage" + level + "_") && !old.equals(tmp))
+                        old.delete();
+                }
+            }
+            if (!tmp.renameTo(new File(this.dir, key + ".raw")))
+                tmp.delete();
+        });
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children)
+                delete(child);
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * Saves recorded stage attempts
+ * @author Lukas Lidauer
+ */
+
+package at.ac.tuwien.mmue_sb10.persistence;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import at.ac.tuwien.mmue_sb10.sim.InputRecording;
+
+/**
+ * Stores recorded stage attempts as flat files in the app's files directory
+ * @since 1.1
+ * @author Lukas Lidauer
+ */
+public class ReplayStore {
+    private static final String TAG = ReplayStore.class.getSimpleName();
+    private static final String DIRECTORY = "replays";
+    private static final int MAX_REPLAYS_PER_STAGE = 200; //oldest replays of a stage are deleted above this count
+
+    /**
+     * Saves a recording. Should not be called on the UI thread
+     * @param context   Context of the application
+     * @param recording Recording of a finished attempt
+     * @since 1.1
+     */
+    public static void save(Context context, InputRecording recording) {
+        File dir = getStageDirectory(context, recording.level);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            Log.e(TAG, "Could not create " + dir);
+            return;
+        }
+        //the time keeps the files sorted by age, the random suffix keeps two saves in the same millisecond apart
+        File file = null;
+        try {
+            file = File.createTempFile(System.currentTimeMillis() + "_", ".rec", dir);
+            try (FileOutputStream out = new FileOutputStream(file)) {
+                out.write(recording.toBytes());
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Could not save replay", e);
+            if (file != null)
+                file.delete();
+            return;
+        }
+
+        File[] files = dir.listFiles();
+        if (files != null && files.length > MAX_REPLAYS_PER_STAGE) {
+            Arrays.sort(files);
+            for (int i = 0; i < files.length - MAX_REPLAYS_PER_STAGE; i++)
+                files[i].delete();
+        }
+    }
+
+    private static File getStageDirectory(Context context, int level) {
+        return new File(new File(context.getFilesDir(), DIRECTORY), "stage" + level);
+    }
+}
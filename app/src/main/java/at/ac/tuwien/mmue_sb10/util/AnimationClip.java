@@ -0,0 +1,70 @@
+package at.ac.tuwien.mmue_sb10.util;
+
+/**
+ * One animation of a sprite sheet, e.g. running. Defined in an animation file and read by AnimationSet
+ * @since 1.1
+ * @author Lukas Lidauer
+ */
+public class AnimationClip {
+    public static final int HIDDEN = -1; //frameAt() returns this after a clip with END_HIDE has ended
+
+    public static final byte END_LOOP = 0; //starts again with the first frame
+    public static final byte END_HOLD = 1; //stays on the last frame
+    public static final byte END_HIDE = 2; //the sprite is not drawn anymore
+
+    public final String name; //name of the section in the animation file
+    public final int[] frames; //frame indices of the sprite sheet in playing order
+    public final float frame_time; //time a frame is shown in ms
+    public final byte end; //END_LOOP, END_HOLD or END_HIDE
+    public final boolean flip_gravity; //the sprite is drawn upside down while the gravity is inverted
+    public final int duration; //frames until the state of the sprite may change. 0 if the clip has no duration
+
+    /**
+     * Creates a new AnimationClip
+     * @param name         Name of the clip
+     * @param frames       Frame indices of the sprite sheet in playing order
+     * @param frame_time   Time a frame is shown in ms
+     * @param end          END_LOOP, END_HOLD or END_HIDE
+     * @param flip_gravity true if the sprite is drawn upside down while the gravity is inverted
+     * @param duration     Frames until the state of the sprite may change, 0 for none
+     * @since 1.1
+     */
+    public AnimationClip(String name, int[] frames, float frame_time, byte end, boolean flip_gravity, int duration) {
+        this.name = name;
+        this.frames = frames;
+        this.frame_time = frame_time;
+        this.end = end;
+        this.flip_gravity = flip_gravity;
+        this.duration = duration;
+    }
+
+    /**
+     * Looks up the frame that is shown at a time of the clip
+     * @param time Time since the clip started in ms
+     * @return Index of the frame in the sprite sheet or HIDDEN
+     * @since 1.1
+     */
+    public int frameAt(float time) {
+        int i = (int) (time / this.frame_time);
+        if (i < this.frames.length)
+            return this.frames[i];
+        switch (this.end) {
+            case END_LOOP:
+                return this.frames[i % this.frames.length];
+            case END_HOLD:
+                return this.frames[this.frames.length - 1];
+            default:
+                return HIDDEN;
+        }
+    }
+
+    /**
+     * Checks if the duration of the clip has passed
+     * @param time Time since the clip started in ms
+     * @return true if the clip has a duration and it has passed
+     * @since 1.1
+     */
+    public boolean isOver(float time) {
+        return this.duration > 0 && time > this.duration * this.frame_time;
+    }
+}
@@ -0,0 +1,120 @@
+package at.ac.tuwien.mmue_sb10.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.HashMap;
+
+/**
+ * All animation clips of one sprite sheet. Read from an animation file in the assets folder, which has the same layout as the stage files:
+ * every clip is a section "#NAME" followed by lines "key=value" and ends with an empty line. Keys are
+ * start and length (or frames as a comma separated list of frame indices), frametime in ms, end (loop, hold or hide),
+ * flip (gravity or none) and duration in frames. Keys that are missing in a clip are taken from the section "#default"
+ * @since 1.1
+ * @author Lukas Lidauer
+ */
+public class AnimationSet {
+    private final HashMap<String, AnimationClip> clips = new HashMap<>();
+    private int frame_count; //highest frame index used by a clip + 1
+
+    /**
+     * Parses an animation file
+     * @param in Stream of the animation file. Is closed after reading
+     * @return The clips of the file
+     * @throws IOException If the stream can not be read or a clip is invalid
+     * @since 1.1
+     */
+    public static AnimationSet read(InputStream in) throws IOException {
+        AnimationSet set = new AnimationSet();
+        HashMap<String, String> defaults = new HashMap<>();
+        HashMap<String, String> section = null;
+        String name = null;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.startsWith("#")) {
+                    set.add(name, section, defaults);
+                    name = line.substring(1);
+                    section = name.equals("default") ? defaults : new HashMap<>();
+                } else if (section != null && line.contains("=")) {
+                    section.put(line.substring(0, line.indexOf('=')).trim(), line.substring(line.indexOf('=') + 1).trim());
+                }
+            }
+            set.add(name, section, defaults);
+        } finally {
+            reader.close();
+        }
+        return set;
+    }
+
+    /**
+     * Creates a clip from the keys of a section
+     */
+    private void add(String name, HashMap<String, String> section, HashMap<String, String> defaults) throws IOException {
+        if (name == null || section == defaults)
+            return;
+        HashMap<String, String> keys = new HashMap<>(defaults);
+        keys.putAll(section);
+        try {
+            int[] frames;
+            if (keys.containsKey("frames")) {
+                String[] list = keys.get("frames").split(",");
+                frames = new int[list.length];
+                for (int i = 0; i < list.length; i++)
+                    frames[i] = Integer.parseInt(list[i].trim());
+            } else {
+                int start = Integer.parseInt(keys.get("start"));
+                frames = new int[Integer.parseInt(keys.get("length"))];
+                for (int i = 0; i < frames.length; i++)
+                    frames[i] = start + i;
+            }
+            if (frames.length == 0)
+                throw new IOException("Clip " + name + " has no frames");
+            for (int frame : frames)
+                this.frame_count = Math.max(this.frame_count, frame + 1);
+
+            byte end;
+            switch (keys.containsKey("end") ? keys.get("end") : "loop") {
+                case "loop":
+                    end = AnimationClip.END_LOOP;
+                    break;
+                case "hold":
+                    end = AnimationClip.END_HOLD;
+                    break;
+                case "hide":
+                    end = AnimationClip.END_HIDE;
+                    break;
+                default:
+                    throw new IOException("Clip " + name + " has an unknown end " + keys.get("end"));
+            }
+            this.clips.put(name, new AnimationClip(name, frames, Float.parseFloat(keys.get("frametime")), end,
+                    "gravity".equals(keys.get("flip")), keys.containsKey("duration") ? Integer.parseInt(keys.get("duration")) : 0));
+        } catch (NumberFormatException | NullPointerException e) {
+            throw new IOException("Clip " + name + " is invalid", e);
+        }
+    }
+
+    /**
+     * @param name Name of the clip
+     * @return The clip
+     * @throws IllegalArgumentException If there is no clip with this name
+     * @since 1.1
+     */
+    public AnimationClip get(String name) {
+        AnimationClip clip = this.clips.get(name);
+        if (clip == null)
+            throw new IllegalArgumentException("No animation clip " + name);
+        return clip;
+    }
+
+    /**
+     * @return Number of frames of the sprite sheet that are used by the clips, starting from the first one
+     * @since 1.1
+     */
+    public int getFrameCount() {
+        return this.frame_count;
+    }
+}
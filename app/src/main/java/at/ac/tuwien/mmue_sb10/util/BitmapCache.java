@@ -0,0 +1,229 @@
+package at.ac.tuwien.mmue_sb10.util;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Process wide cache of the bitmaps decoded from resources, so entering the game again does not decode the same PNGs again.
+ * Bitmaps are keyed by resource id and the size they are scaled to and are shared between all users, so they must not be changed or recycled.
+ * Every acquire has to be followed by a release. Bitmaps nobody holds stay cached until the system asks to trim memory
+ * @since 1.1
+ * @author Lukas Lidauer
+ */
+public class BitmapCache implements ComponentCallbacks2 {
+    private static final String TAG = BitmapCache.class.getSimpleName();
+    private static BitmapCache sInstance;
+
+    /**
+     * A cached bitmap or sliced sprite sheet
+     */
+    private static class Entry {
+        final Object value; //Bitmap or Bitmap[]
+        final long bytes;
+        int refs; //users holding the value
+
+        Entry(Object value, long bytes) {
+            this.value = value;
+            this.bytes = bytes;
+        }
+    }
+
+    private final Context context;
+    private final HashMap<String, Entry> entries = new HashMap<>();
+    private final IdentityHashMap<Object, Entry> by_value = new IdentityHashMap<>(); //finds the entry of a released value
+    private final HashMap<Integer, int[]> source_sizes = new HashMap<>(); //width and heigth of the decoded resources
+    private long bytes; //memory of all cached bitmaps
+
+    private BitmapCache(Context context) {
+        this.context = context.getApplicationContext();
+        this.context.registerComponentCallbacks(this);
+    }
+
+    /**
+     * @param context Context to construct the BitmapCache if there is no instance yet
+     * @return The process wide BitmapCache
+     * @since 1.1
+     */
+    public static synchronized BitmapCache getInstance(Context context) {
+        if (sInstance == null)
+            sInstance = new BitmapCache(context);
+        return sInstance;
+    }
+
+    /**
+     * Returns a resource scaled to a size
+     * @param res_id Resource id of the drawable
+     * @param width  Width to scale to in px
+     * @param heigth Heigth to scale to in px
+     * @param filter true to filter when scaling
+     * @return The shared bitmap
+     * @since 1.1
+     */
+    public synchronized Bitmap acquire(int res_id, int width, int heigth, boolean filter) {
+        String key = res_id + ":" + width + "x" + heigth + (filter ? ":filter" : "");
+        Entry entry = this.entries.get(key);
+        if (entry == null) {
+            Bitmap decoded = decode(res_id);
+            Bitmap scaled = Bitmap.createScaledBitmap(decoded, width, heigth, filter);
+            if (scaled != decoded)
+                decoded.recycle();
+            entry = put(key, scaled, bytesOf(scaled));
+        }
+        entry.refs++;
+        return (Bitmap) entry.value;
+    }
+
+    /**
+     * Returns a resource scaled by a factor. The size is computed like (int) (width * scale)
+     * @param res_id Resource id of the drawable
+     * @param scale  Factor to scale by
+     * @param filter true to filter when scaling
+     * @return The shared bitmap
+     * @since 1.1
+     */
+    public synchronized Bitmap acquire(int res_id, float scale, boolean filter) {
+        int[] size = sourceSize(res_id);
+        return acquire(res_id, (int) (size[0] * scale), (int) (size[1] * scale), filter);
+    }
+
+    /**
+     * Returns the frames of a sprite sheet
+     * @param res_id        Resource id of the sprite sheet
+     * @param frame_width   Width of a frame in px
+     * @param frame_heigth  Heigth of a frame in px
+     * @param columns_first true if the frames are numbered top to bottom, then left to right. false for left to right, then top to bottom
+     * @return The shared frames
+     * @since 1.1
+     */
+    public synchronized Bitmap[] acquireFrames(int res_id, int frame_width, int frame_heigth, boolean columns_first) {
+        String key = res_id + ":frames" + frame_width + "x" + frame_heigth + (columns_first ? ":columns" : "");
+        Entry entry = this.entries.get(key);
+        if (entry == null) {
+            Bitmap sheet = decode(res_id);
+            int h = sheet.getWidth() / frame_width;
+            int v = sheet.getHeight() / frame_heigth;
+            Bitmap[] frames = new Bitmap[h * v];
+            long frame_bytes = 0;
+            for (int i = 0; i < frames.length; i++) {
+                int x = columns_first ? i / v : i % h;
+                int y = columns_first ? i % v : i / h;
+                frames[i] = Bitmap.createBitmap(sheet, x * frame_width, y * frame_heigth, frame_width, frame_heigth);
+                frame_bytes += bytesOf(frames[i]);
+            }
+            entry = put(key, frames, frame_bytes);
+        }
+        entry.refs++;
+        return (Bitmap[]) entry.value;
+    }
+
+    /**
+     * Gives back a bitmap or frames returned by acquire or acquireFrames. Must not be used afterwards
+     * @param value Bitmap or Bitmap[] to give back. null is ignored
+     * @since 1.1
+     */
+    public synchronized void release(Object value) {
+        if (value == null)
+            return;
+        Entry entry = this.by_value.get(value);
+        if (entry == null || entry.refs == 0)
+            Log.w(TAG, "Released a bitmap that is not held");
+        else
+            entry.refs--;
+    }
+
+    /**
+     * @return Memory of all cached bitmaps in bytes
+     * @since 1.1
+     */
+    public synchronized long getBytes() {
+        return this.bytes;
+    }
+
+    /**
+     * Recycles all bitmaps that are not held by anyone
+     * @since 1.1
+     */
+    public synchronized void trim() {
+        long before = this.bytes;
+        Iterator<Entry> it = this.entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (entry.refs > 0)
+                continue;
+            it.remove();
+            this.by_value.remove(entry.value);
+            this.bytes -= entry.bytes;
+            if (entry.value instanceof Bitmap) {
+                ((Bitmap) entry.value).recycle();
+            } else {
+                for (Bitmap frame : (Bitmap[]) entry.value)
+                    frame.recycle();
+            }
+        }
+        Log.i(TAG, "trimmed " + (before - this.bytes) / 1024 + " KB, " + this.bytes / 1024 + " KB in use");
+    }
+
+    /**
+     * Trims the cache if the app is in the background or memory is running low. Hiding the UI alone keeps the cache, the user might come back
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_LOW || level == TRIM_MEMORY_RUNNING_CRITICAL)
+            trim();
+    }
+
+    @Override
+    public void onLowMemory() {
+        trim();
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration configuration) {
+
+    }
+
+    private Entry put(String key, Object value, long bytes) {
+        Entry entry = new Entry(value, bytes);
+        this.entries.put(key, entry);
+        this.by_value.put(value, entry);
+        this.bytes += bytes;
+        return entry;
+    }
+
+    private Bitmap decode(int res_id) {
+        BitmapFactory.Options o = new BitmapFactory.Options();
+        o.inScaled = false;
+        Bitmap bitmap = BitmapFactory.decodeResource(this.context.getResources(), res_id, o);
+        this.source_sizes.put(res_id, new int[]{bitmap.getWidth(), bitmap.getHeight()});
+        return bitmap;
+    }
+
+    /**
+     * Size of a resource. Only the bounds are decoded if the resource has not been decoded before
+     */
+    private int[] sourceSize(int res_id) {
+        int[] size = this.source_sizes.get(res_id);
+        if (size == null) {
+            BitmapFactory.Options o = new BitmapFactory.Options();
+            o.inScaled = false;
+            o.inJustDecodeBounds = true;
+            BitmapFactory.decodeResource(this.context.getResources(), res_id, o);
+            size = new int[]{o.outWidth, o.outHeight};
+            this.source_sizes.put(res_id, size);
+        }
+        return size;
+    }
+
+    private static long bytesOf(Bitmap bitmap) {
+        return (long) bitmap.getRowBytes() * bitmap.getHeight();
+    }
+}
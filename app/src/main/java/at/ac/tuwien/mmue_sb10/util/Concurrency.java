@@ -1,13 +1,24 @@
 package at.ac.tuwien.mmue_sb10.util;
 
 
-import java.util.concurrent.Executor;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class Concurrency {
-    private static final Executor executor = Executors.newSingleThreadExecutor();
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private static final ExecutorService loader = Executors.newSingleThreadExecutor(); //loads games, so long loads do not hold up database tasks
 
     public static void executeAsync(Runnable task) {
         executor.execute(task);
     }
+
+    public static <T> Future<T> submitAsync(Callable<T> task) {
+        return executor.submit(task);
+    }
+
+    public static Future<?> executeLoading(Runnable task) {
+        return loader.submit(task);
+    }
 }
@@ -0,0 +1,92 @@
+package at.ac.tuwien.mmue_sb10.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free single-producer/single-consumer ring buffer of input commands.
+ * The UI thread offers commands, the GameThread polls them at the start of a simulation step. Nothing is allocated after construction
+ * @since 1.1
+ * @author Lukas Lidauer
+ */
+public class InputQueue {
+    public static final byte TOUCH = 0; //touch down at x, y
+    public static final byte BACK = 1; //back button pressed
+
+    /**
+     * Holds a polled command. Reused by the consumer to avoid allocations
+     */
+    public static class Command {
+        public byte type; //TOUCH or BACK
+        public float x; //touch position x in px
+        public float y; //touch position y in px
+        public long event_time; //time of the event in ns, same clock as System.nanoTime()
+    }
+
+    private final int mask; //capacity - 1
+    private final byte[] types;
+    private final float[] xs;
+    private final float[] ys;
+    private final long[] event_times;
+
+    private final AtomicLong head = new AtomicLong(); //next command to poll. only written by the consumer
+    private final AtomicLong tail = new AtomicLong(); //next free slot. only written by the producer
+    private long head_cache; //last head seen by the producer. saves reading the atomic on every offer
+
+    /**
+     * Creates a new InputQueue
+     * @param capacity Maximum number of waiting commands. Is rounded up to a power of two
+     * @since 1.1
+     */
+    public InputQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        this.mask = size - 1;
+        this.types = new byte[size];
+        this.xs = new float[size];
+        this.ys = new float[size];
+        this.event_times = new long[size];
+    }
+
+    /**
+     * Adds a command. Must only be called from one thread (the producer)
+     * @param type       TOUCH or BACK
+     * @param x          Touch position x in px
+     * @param y          Touch position y in px
+     * @param event_time Time of the event in ns
+     * @return false if the queue is full and the command was dropped
+     * @since 1.1
+     */
+    public boolean offer(byte type, float x, float y, long event_time) {
+        long tail = this.tail.get();
+        if (tail - this.head_cache > this.mask) {
+            this.head_cache = this.head.get();
+            if (tail - this.head_cache > this.mask)
+                return false;
+        }
+        int i = (int) tail & this.mask;
+        this.types[i] = type;
+        this.xs[i] = x;
+        this.ys[i] = y;
+        this.event_times[i] = event_time;
+        this.tail.lazySet(tail + 1); //publishes the slot to the consumer
+        return true;
+    }
+
+    /**
+     * Removes the oldest command. Must only be called from one thread (the consumer)
+     * @param out Receives the command
+     * @return false if the queue is empty
+     * @since 1.1
+     */
+    public boolean poll(Command out) {
+        long head = this.head.get();
+        if (head >= this.tail.get())
+            return false;
+        int i = (int) head & this.mask;
+        out.type = this.types[i];
+        out.x = this.xs[i];
+        out.y = this.ys[i];
+        out.event_time = this.event_times[i];
+        this.head.lazySet(head + 1); //frees the slot for the producer
+        return true;
+    }
+}
@@ -0,0 +1,89 @@
+package at.ac.tuwien.mmue_sb10.util;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size histogram of latencies with a resolution of 0.25ms. Recording does not allocate.
+ * Not thread-safe, record and read it on the same thread
+ * @since 1.1
+ * @author Lukas Lidauer
+ */
+public class LatencyHistogram {
+    private static final long BUCKET_NANOS = 250_000; //width of a bucket
+
+    private final int[] buckets; //number of latencies per bucket. the last bucket holds everything above the range
+    private int count; //number of recorded latencies
+    private long max_nanos; //highest recorded latency
+
+    /**
+     * Creates a new LatencyHistogram
+     * @param range_nanos Highest latency that is counted exactly, higher latencies are counted in one overflow bucket
+     * @since 1.1
+     */
+    public LatencyHistogram(long range_nanos) {
+        this.buckets = new int[(int) (range_nanos / BUCKET_NANOS) + 1];
+    }
+
+    /**
+     * Adds a latency
+     * @param nanos Latency in ns
+     * @since 1.1
+     */
+    public void record(long nanos) {
+        int bucket = (int) Math.min(Math.max(nanos, 0) / BUCKET_NANOS, this.buckets.length - 1);
+        this.buckets[bucket]++;
+        this.count++;
+        if (nanos > this.max_nanos)
+            this.max_nanos = nanos;
+    }
+
+    /**
+     * @return Number of recorded latencies
+     * @since 1.1
+     */
+    public int count() {
+        return this.count;
+    }
+
+    /**
+     * @return Highest recorded latency in ms
+     * @since 1.1
+     */
+    public float maxMs() {
+        return this.max_nanos / 1_000_000f;
+    }
+
+    /**
+     * Finds the latency below which a share of all recorded latencies lies
+     * @param percentile Share between 0 and 100
+     * @return Upper edge of the bucket in ms, 0 if nothing was recorded
+     * @since 1.1
+     */
+    public float percentileMs(float percentile) {
+        if (this.count == 0)
+            return 0;
+        int rank = (int) Math.ceil(this.count * percentile / 100);
+        int sum = 0;
+        for (int i = 0; i < this.buckets.length - 1; i++) {
+            sum += this.buckets[i];
+            if (sum >= rank)
+                return (i + 1) * BUCKET_NANOS / 1_000_000f;
+        }
+        return maxMs();
+    }
+
+    /**
+     * Removes all recorded latencies
+     * @since 1.1
+     */
+    public void reset() {
+        Arrays.fill(this.buckets, 0);
+        this.count = 0;
+        this.max_nanos = 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("n=%d p50=%.2fms p95=%.2fms p99=%.2fms max=%.2fms", this.count, percentileMs(50), percentileMs(95), percentileMs(99), maxMs());
+    }
+}
@@ -0,0 +1,66 @@
+package at.ac.tuwien.mmue_sb10.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free triple buffer to hand the latest value from one writer thread to one reader thread.
+ * The writer fills the back buffer and publishes it, the reader takes the latest published buffer. Neither side ever waits for the other,
+ * a buffer that was published but not taken before the next publish is reused. Nothing is allocated after construction
+ * @param <T> Type of the buffers. Buffers are reused, so T is usually mutable and only written while it is the back buffer
+ * @since 1.1
+ * @author Lukas Lidauer
+ */
+public class TripleBuffer<T> {
+    private static final int INDEX = 3; //mask of the buffer index in middle
+    private static final int FRESH = 4; //set in middle if it holds a published buffer the reader has not taken yet
+
+    private final Object[] buffers = new Object[3];
+    private final AtomicInteger middle = new AtomicInteger(1); //buffer that is handed over, plus the FRESH flag
+    private int back = 0; //buffer of the writer. only used by the writer
+    private int front = 2; //buffer of the reader. only used by the reader
+
+    /**
+     * Creates a new TripleBuffer
+     * @param a First buffer. Is the back buffer
+     * @param b Second buffer
+     * @param c Third buffer. Is returned by getFront() until something is published
+     * @since 1.1
+     */
+    public TripleBuffer(T a, T b, T c) {
+        this.buffers[0] = a;
+        this.buffers[1] = b;
+        this.buffers[2] = c;
+    }
+
+    /**
+     * @return The buffer to write to. Must only be called by the writer
+     * @since 1.1
+     */
+    @SuppressWarnings("unchecked")
+    public T getBack() {
+        return (T) this.buffers[this.back];
+    }
+
+    /**
+     * Publishes the back buffer and makes another buffer the back buffer. Must only be called by the writer
+     * @return false if the previously published buffer was replaced before the reader took it
+     * @since 1.1
+     */
+    public boolean publish() {
+        int old = this.middle.getAndSet(this.back | FRESH);
+        this.back = old & INDEX;
+        return (old & FRESH) == 0;
+    }
+
+    /**
+     * Takes the latest published buffer if there is a new one. Must only be called by the reader
+     * @return The latest published buffer. Stays valid until the next call
+     * @since 1.1
+     */
+    @SuppressWarnings("unchecked")
+    public T getFront() {
+        if ((this.middle.get() & FRESH) != 0)
+            this.front = this.middle.getAndSet(this.front) & INDEX;
+        return (T) this.buffers[this.front];
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * Binary format of the stages
+ * @author Lukas Lidauer
+ */
+
+package at.ac.tuwien.mmue_sb10.sim;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * This class holds a stage in the binary format that is packaged with the app (stageN.bin).
+ * The files are compiled from the stage files (stageN.txt) at build time, so loading a stage only copies two arrays:
+ * the tile ids as shorts and the collision flags of every tile, both one row of the stage after another.
+ * Resource names are stored as they are, resource ids are not stable between builds
+ * @since 1.1
+ * @author Lukas Lidauer
+ */
+public class CompiledStage {
+    private static final byte VERSION = 1; //version of the binary format
+
+    public float scale; //scaling of the stage. scale * density = stage_scale
+    public String music; //resource name of the bg music
+    public String background; //resource name of the background drawable
+    public int player_start_x, player_start_y; //starting position of player in tiles
+    public float player_velocity_x; //how far player moves forward
+    public int width; //width in tiles
+    public int heigth; //heigth in tiles
+    public short[] tiles; //tile ids. tile (x, y) is at index y * width + x, StageFile.NO_TILE if there is no tile
+    public StageGrid grid; //collision data
+
+    /**
+     * Compiles a stage file
+     * @param file            Parsed stage file
+     * @param tiles_collision Behavior of every tile in the tileset. Uses the tile ids of the stage file as index
+     * @return The compiled stage
+     * @since 1.1
+     */
+    public static byte[] compile(StageFile file, int[] tiles_collision) {
+        byte[] music = file.music.getBytes(StandardCharsets.UTF_8);
+        byte[] background = file.background.getBytes(StandardCharsets.UTF_8);
+        int size = file.width * file.heigth;
+        ByteBuffer out = ByteBuffer.allocate(1 + 4 + 2 + music.length + 2 + background.length + 4 + 4 + 4 + 2 + 2 + size * 3);
+        out.put(VERSION);
+        out.putFloat(file.scale);
+        out.putShort((short) music.length).put(music);
+        out.putShort((short) background.length).put(background);
+        out.putInt(file.player_start_x);
+        out.putInt(file.player_start_y);
+        out.putFloat(file.player_velocity_x);
+        out.putShort((short) file.width);
+        out.putShort((short) file.heigth);
+        for (int y = 0; y < file.heigth; y++)
+            for (int x = 0; x < file.width; x++)
+                out.putShort((short) file.tiles[x][y]);
+        out.put(StageGrid.fromStageFile(file, tiles_collision).tiles);
+        return out.array();
+    }
+
+    /**
+     * Reads a compiled stage. Besides the two names only the arrays of tile ids and collision flags are allocated
+     * @param in Compiled stage. Read from its position on
+     * @return The stage
+     * @throws IllegalArgumentException If the data is no compiled stage of a known version
+     * @since 1.1
+     */
+    public static CompiledStage read(ByteBuffer in) {
+        if (in.remaining() == 0 || in.get() != VERSION)
+            throw new IllegalArgumentException("Unknown stage version");
+        CompiledStage stage = new CompiledStage();
+        stage.scale = in.getFloat();
+        stage.music = readString(in);
+        stage.background = readString(in);
+        stage.player_start_x = in.getInt();
+        stage.player_start_y = in.getInt();
+        stage.player_velocity_x = in.getFloat();
+        stage.width = in.getShort();
+        stage.heigth = in.getShort();
+        int size = stage.width * stage.heigth;
+        if (in.remaining() != size * 3)
+            throw new IllegalArgumentException("Stage is truncated");
+        stage.tiles = new short[size];
+        in.asShortBuffer().get(stage.tiles);
+        in.position(in.position() + size * 2);
+        stage.grid = new StageGrid(stage.width, stage.heigth);
+        in.get(stage.grid.tiles);
+        return stage;
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[in.getShort()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,215 @@
+/**
+ * Records the inputs of a stage attempt so it can be replayed
+ * @author Lukas Lidauer
+ */
+
+package at.ac.tuwien.mmue_sb10.sim;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * This class holds the jump and gravity inputs of one stage attempt together with the step in which they happened.
+ * Since the simulation runs in fixed steps, feeding the inputs back in the same steps leads to exactly the same result.
+ * Recordings are stored delta-encoded as variable length integers, so a typical attempt needs less than a hundred bytes
+ * @since 1.1
+ * @author Lukas Lidauer
+ */
+public class InputRecording {
+    public static final int JUMP = 0; //player jumped
+    public static final int GRAVITY = 1; //player inverted the gravity
+
+    public static final byte END_ABORTED = 0; //attempt was not finished
+    public static final byte END_DEAD = 1; //player died
+    public static final byte END_FINISHED = 2; //player reached the finish
+
+    private static final byte VERSION = 1; //version of the binary format
+
+    public final int level; //ID of the stage
+    public final long step_nanos; //length of a simulation step the inputs were recorded with
+    public int end_tick; //step in which the attempt ended
+    public float end_pos_x; //position x of the player at the end
+    public float end_pos_y; //position y of the player at the end
+    public byte end_state; //END_ABORTED, END_DEAD or END_FINISHED
+
+    private int[] ticks; //step of every input
+    private byte[] inputs; //JUMP or GRAVITY
+    private int count; //number of inputs
+
+    /**
+     * Creates an empty recording
+     * @param level      ID of the stage
+     * @param step_nanos Length of a simulation step
+     * @since 1.1
+     */
+    public InputRecording(int level, long step_nanos) {
+        this.level = level;
+        this.step_nanos = step_nanos;
+        this.ticks = new int[16];
+        this.inputs = new byte[16];
+    }
+
+    /**
+     * Adds an input. Inputs have to be added in order of their steps
+     * @param tick  Number of steps simulated before the input is applied
+     * @param input JUMP or GRAVITY
+     * @since 1.1
+     */
+    public void record(int tick, int input) {
+        if (this.count == this.ticks.length) {
+            this.ticks = Arrays.copyOf(this.ticks, this.count * 2);
+            this.inputs = Arrays.copyOf(this.inputs, this.count * 2);
+        }
+        this.ticks[this.count] = tick;
+        this.inputs[this.count] = (byte) input;
+        this.count++;
+    }
+
+    /**
+     * Stores the final state of the simulation to verify replays
+     * @param sim Simulation at the end of the attempt
+     * @since 1.1
+     */
+    public void end(PlayerSim sim) {
+        this.end_tick = sim.player_tick;
+        this.end_pos_x = sim.player_pos_x;
+        this.end_pos_y = sim.player_pos_y;
+        this.end_state = sim.player_dead ? END_DEAD : sim.player_finished ? END_FINISHED : END_ABORTED;
+    }
+
+    /**
+     * Checks if a simulation ended in the same state as the recorded attempt
+     * @param sim Simulation after the replay
+     * @return true if step, position and outcome are equal
+     * @since 1.1
+     */
+    public boolean matches(PlayerSim sim) {
+        return sim.player_tick == this.end_tick
+                && Float.floatToIntBits(sim.player_pos_x) == Float.floatToIntBits(this.end_pos_x)
+                && Float.floatToIntBits(sim.player_pos_y) == Float.floatToIntBits(this.end_pos_y)
+                && (sim.player_dead ? END_DEAD : sim.player_finished ? END_FINISHED : END_ABORTED) == this.end_state;
+    }
+
+    /**
+     * @return Number of inputs
+     * @since 1.1
+     */
+    public int size() {
+        return this.count;
+    }
+
+    /**
+     * @param i Index of the input
+     * @return Number of steps simulated before the input is applied
+     * @since 1.1
+     */
+    public int getTick(int i) {
+        return this.ticks[i];
+    }
+
+    /**
+     * @param i Index of the input
+     * @return JUMP or GRAVITY
+     * @since 1.1
+     */
+    public int getInput(int i) {
+        return this.inputs[i];
+    }
+
+    /**
+     * Encodes the recording. Every input is stored as the number of steps since the last input and the input type
+     * @return The encoded recording
+     * @since 1.1
+     */
+    public byte[] toBytes() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(24 + this.count * 2);
+        out.write(VERSION);
+        writeVarInt(out, (this.level << 1) ^ (this.level >> 31));
+        writeVarLong(out, this.step_nanos);
+        writeVarInt(out, this.end_tick);
+        writeInt(out, Float.floatToIntBits(this.end_pos_x));
+        writeInt(out, Float.floatToIntBits(this.end_pos_y));
+        out.write(this.end_state);
+        writeVarInt(out, this.count);
+        int last_tick = 0;
+        for (int i = 0; i < this.count; i++) {
+            writeVarInt(out, (this.ticks[i] - last_tick) << 1 | this.inputs[i]);
+            last_tick = this.ticks[i];
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes a recording created with toBytes()
+     * @param data The encoded recording
+     * @return The decoded recording
+     * @throws IllegalArgumentException If the data is no recording of a known version
+     * @since 1.1
+     */
+    public static InputRecording fromBytes(byte[] data) {
+        int[] pos = {0};
+        if (data.length == 0 || data[pos[0]++] != VERSION)
+            throw new IllegalArgumentException("Unknown recording version");
+        int zigzag = readVarInt(data, pos);
+        InputRecording recording = new InputRecording((zigzag >>> 1) ^ -(zigzag & 1), readVarLong(data, pos));
+        recording.end_tick = readVarInt(data, pos);
+        recording.end_pos_x = Float.intBitsToFloat(readInt(data, pos));
+        recording.end_pos_y = Float.intBitsToFloat(readInt(data, pos));
+        if (pos[0] >= data.length)
+            throw new IllegalArgumentException("Recording is truncated");
+        recording.end_state = data[pos[0]++];
+        int count = readVarInt(data, pos);
+        int tick = 0;
+        for (int i = 0; i < count; i++) {
+            int value = readVarInt(data, pos);
+            tick += value >>> 1;
+            recording.record(tick, value & 1);
+        }
+        return recording;
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        writeVarLong(out, value & 0xFFFFFFFFL);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private static int readVarInt(byte[] data, int[] pos) {
+        return (int) readVarLong(data, pos);
+    }
+
+    private static long readVarLong(byte[] data, int[] pos) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (pos[0] >= data.length || shift > 63)
+                throw new IllegalArgumentException("Recording is truncated");
+            b = data[pos[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static int readInt(byte[] data, int[] pos) {
+        if (pos[0] + 4 > data.length)
+            throw new IllegalArgumentException("Recording is truncated");
+        int value = (data[pos[0]] & 0xFF) << 24 | (data[pos[0] + 1] & 0xFF) << 16 | (data[pos[0] + 2] & 0xFF) << 8 | (data[pos[0] + 3] & 0xFF);
+        pos[0] += 4;
+        return value;
+    }
+}
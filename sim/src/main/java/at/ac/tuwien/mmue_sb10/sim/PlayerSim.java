@@ -0,0 +1,415 @@
+/**
+ * Simulates the player on a stage. Handles movement, gravity and collision detection without depending on Android
+ *
+ * @author Lukas Lidauer & Jan König
+ */
+package at.ac.tuwien.mmue_sb10.sim;
+
+/**
+ * This class holds the physical state of the player (position, velocity, gravity, ...) and advances it step by step on a StageGrid.
+ * Everything that is not physics (sounds, saving, drawing) is left to the PlayerSimListener
+ * @since 1.1
+ * @author Lukas Lidauer & Jan König
+ */
+public class PlayerSim {
+    public static final int PLAYER_WIDTH = 18; //player width in pixels
+    public static final int PLAYER_HEIGTH = 24; //player heigth in pixel
+    public static final long STEP_NANOS = 1_000_000_000L / 120; //fixed length of one simulation step (120 steps per second)
+    public static final float STEP_MS = STEP_NANOS / 1_000_000f; //fixed length of one simulation step in ms
+
+    /*
+     * PLAYER: POSITION, VELOCITY, ACCELERATION
+     */
+    public float player_pos_x;
+    public float player_pos_y;
+    public float player_velocity_x;
+    public float player_boost_x;
+    public float player_velocity_y;
+    public float player_acceleration_y;
+
+    private float player_move_y;
+    private float player_move_x;
+
+    /*
+     * PLAYER: STATE
+     */
+    public byte gravity; //gravity can either be regular or inverted (or top or bottom)
+    public boolean player_inAir; //player is in air?
+    public boolean player_onBoost; //player touches booster?
+    public boolean player_inInverter; //player touches inverter?
+    public boolean player_onJumper; //player touches jumper?
+    public boolean player_first_gravity_inAir; //player is allowed to do only one gravity change in the air until he hits the ground again. This variable keeps track of that.
+    public boolean player_dead; //player died
+    public boolean player_finished; //player touched the finish
+    public boolean player_no_input; //game doesnt accept input for player until stage is finished
+
+    public PlayerState player_state; //current state of the player. used for animations
+    public PlayerState player_last_state; //last state of player. used for animations
+    public float player_anim_time; //time counter used for animations
+    public int player_tick; //number of steps simulated since the last reset
+
+    /*
+     * COLLISION
+     */
+    private StageGrid grid; //collision data of the current stage
+    private final SweptCollider collider; //finds the tiles the player runs into
+    private float col_time_x; //collision time on x-axis. 0 is the start, 1 the end of the step
+    private float col_time_y; //collision time on y-axis. 0 is the start, 1 the end of the step
+
+    private final PlayerSimListener listener;
+
+    /**
+     * Creates a new PlayerSim instance. reset() has to be called before the first update
+     * @param listener Gets notified about events of the simulation
+     * @since 1.1
+     */
+    public PlayerSim(PlayerSimListener listener) {
+        this.listener = listener;
+        this.collider = new SweptCollider();
+        this.player_state = PlayerState.IDLE;
+    }
+
+    /**
+     * Places the player at the start of a stage and resets all values
+     * @param grid       Collision data of the stage
+     * @param start_x    Starting position x in tiles
+     * @param start_y    Starting position y in tiles
+     * @param velocity_x Horizontal velocity of the player
+     * @param state      State the player starts in (used for animations)
+     * @since 1.1
+     */
+    public void reset(StageGrid grid, int start_x, int start_y, float velocity_x, PlayerState state) {
+        this.grid = grid;
+        this.collider.setGrid(grid);
+        this.player_pos_x = start_x * 24;
+        this.player_pos_y = start_y * 24 + 24 - PLAYER_HEIGTH;
+        this.player_velocity_x = velocity_x;
+        this.player_boost_x = 1.0f;
+        this.player_velocity_y = 0;
+        this.player_acceleration_y = 450;
+        this.player_dead = false;
+        this.player_finished = false;
+        this.player_no_input = false;
+        this.player_inAir = true;
+        this.player_onBoost = false;
+        this.player_inInverter = false;
+        this.player_onJumper = false;
+        this.player_first_gravity_inAir = false;
+        this.gravity = 1;
+
+        this.player_last_state = this.player_state;
+        this.player_state = state;
+        this.player_anim_time = 0;
+        this.player_tick = 0;
+    }
+
+    /**
+     * Copies the state of another simulation. The listener is not copied
+     * @param other Simulation to copy
+     * @since 1.1
+     */
+    public void copyFrom(PlayerSim other) {
+        this.grid = other.grid;
+        this.collider.setGrid(other.grid);
+        this.player_pos_x = other.player_pos_x;
+        this.player_pos_y = other.player_pos_y;
+        this.player_velocity_x = other.player_velocity_x;
+        this.player_boost_x = other.player_boost_x;
+        this.player_velocity_y = other.player_velocity_y;
+        this.player_acceleration_y = other.player_acceleration_y;
+        this.gravity = other.gravity;
+        this.player_inAir = other.player_inAir;
+        this.player_onBoost = other.player_onBoost;
+        this.player_inInverter = other.player_inInverter;
+        this.player_onJumper = other.player_onJumper;
+        this.player_first_gravity_inAir = other.player_first_gravity_inAir;
+        this.player_dead = other.player_dead;
+        this.player_finished = other.player_finished;
+        this.player_no_input = other.player_no_input;
+        this.player_state = other.player_state;
+        this.player_last_state = other.player_last_state;
+        this.player_anim_time = other.player_anim_time;
+        this.player_tick = other.player_tick;
+    }
+
+    /**
+     * Advances the simulation by one step. Handles collision detection, gravity, movement, ...
+     * The hitbox is swept along both axes, the axis that touches a blocking tile first is resolved first.
+     * Landing on a blocking tile stops the fall, running into one horizontally or touching spikes kills the player
+     *
+     * @param deltaFrameTime The length of the step in ms
+     * @since 1.1
+     */
+    public void update(float deltaFrameTime) {
+        if (this.player_dead || this.player_finished)
+            return;
+
+        this.player_tick++;
+        this.player_velocity_y += (deltaFrameTime / 1000) * this.player_acceleration_y * this.gravity;
+        this.player_move_y = this.player_velocity_y * (deltaFrameTime / 1000);
+        this.player_move_x = this.player_velocity_x * this.player_boost_x * (deltaFrameTime / 1000);
+
+        this.col_time_x = this.collider.sweepX(this.player_pos_x, this.player_pos_y, PLAYER_WIDTH, PLAYER_HEIGTH, this.player_move_x);
+        this.col_time_y = this.collider.sweepY(this.player_pos_x, this.player_pos_y, PLAYER_WIDTH, PLAYER_HEIGTH, this.player_move_y);
+
+        if (this.col_time_x == SweptCollider.NO_CONTACT && this.col_time_y == SweptCollider.NO_CONTACT) {
+            //Moving diagonally can hit the corner of a tile that neither axis touches on its own.
+            //The axis that enters the tile last is the one that touches it
+            float corner_x = this.collider.sweepX(this.player_pos_x, this.player_pos_y + this.player_move_y, PLAYER_WIDTH, PLAYER_HEIGTH, this.player_move_x);
+            float corner_y = this.collider.sweepY(this.player_pos_x + this.player_move_x, this.player_pos_y, PLAYER_WIDTH, PLAYER_HEIGTH, this.player_move_y);
+            if (corner_x != SweptCollider.NO_CONTACT && (corner_y == SweptCollider.NO_CONTACT || corner_x > corner_y))
+                this.col_time_x = corner_x;
+            else
+                this.col_time_y = corner_y;
+        }
+
+        if (this.col_time_x < this.col_time_y) {
+            //X Collision before any Y Collision => DIE!
+            killPlayer(this.col_time_x);
+            return;
+        } else if (this.col_time_y != SweptCollider.NO_CONTACT && (this.collider.contact_flags & StageGrid.DEADLY) != 0) {
+            //Y Death Collision (spikes)
+            killPlayer(this.col_time_y);
+            return;
+        }
+
+        boolean grounded = this.col_time_y != SweptCollider.NO_CONTACT;
+        if (grounded) {
+            //Y Solid Collision => Position adjustment
+            adjustPositionY();
+            //X Collision can still happen after landing
+            this.col_time_x = this.collider.sweepX(this.player_pos_x, this.player_pos_y, PLAYER_WIDTH, PLAYER_HEIGTH, this.player_move_x);
+            if (this.col_time_x != SweptCollider.NO_CONTACT) {
+                killPlayer(this.col_time_x);
+                return;
+            }
+        } else {
+            this.player_pos_y += this.player_move_y;
+        }
+        this.player_pos_x += this.player_move_x;
+
+        if (this.player_pos_x < 0 || this.player_pos_y < 0 || (int) ((this.player_pos_x + PLAYER_WIDTH) / 24) >= this.grid.width || (int) ((this.player_pos_y + PLAYER_HEIGTH) / 24) >= this.grid.heigth) {
+            //Player is out of bounds => DIE!
+            killPlayer();
+            return;
+        }
+
+        int flags = this.collider.overlap(this.player_pos_x, this.player_pos_y, PLAYER_WIDTH, PLAYER_HEIGTH);
+        if ((flags & StageGrid.INVERTER) != 0) {
+            //X Inverter Collision
+            if (!this.player_inInverter) {
+                this.player_velocity_x *= -1;
+                this.player_inInverter = true;
+            }
+        } else if ((flags & StageGrid.FINISH) != 0) {
+            //X Finish Collision
+            finishStage();
+        } else if ((flags & StageGrid.NO_INPUT) != 0) {
+            //X Collision with no-input tile
+            //happens before finish line for running out of screen effect
+            setNoPlayerInput();
+        } else if ((flags & StageGrid.DEADLY) != 0) {
+            //X Death Collision (spikes)
+            killPlayer();
+        } else {
+            if (this.player_inInverter)
+                this.player_inInverter = false;
+        }
+
+        if (grounded) {
+            if (this.player_inAir)
+                this.player_inAir = false;
+            if (this.player_first_gravity_inAir)
+                this.player_first_gravity_inAir = false;
+        } else {
+            //Player does not stand on anything
+            if (!this.player_inAir)
+                this.player_inAir = true;
+            if (this.player_onBoost)
+                this.player_onBoost = false;
+            if (this.player_onJumper)
+                this.player_onJumper = false;
+
+            this.listener.onAirborne();
+        }
+    }
+
+    /**
+     * Boosts the player speed by a factor of 1.5 if going right, otherwise slows down by factor of 0.66
+     * Only works once per boost platform
+     *
+     * @since 0.1
+     */
+    private void boostPlayerRight() {
+        if (this.player_velocity_x > 0 && !this.player_onBoost) {
+            this.player_boost_x *= 1.5;
+            this.player_onBoost = true;
+        } else if (this.player_velocity_x < 0 && !this.player_onBoost) {
+            this.player_boost_x *= (2f / 3);
+            this.player_onBoost = true;
+        }
+    }
+
+    /**
+     * Boosts the player speed by a factor of 1.5 if going left, otherwise slows down by factor of 0.66
+     * Only works once per boost platform
+     *
+     * @since 0.1
+     */
+    private void boostPlayerLeft() {
+        if (this.player_velocity_x < 0 && !this.player_onBoost) {
+            this.player_boost_x *= 1.5;
+            this.player_onBoost = true;
+        } else if (this.player_velocity_x > 0 && !this.player_onBoost) {
+            this.player_boost_x *= (2f / 3);
+            this.player_onBoost = true;
+        }
+    }
+
+    /**
+     * When player object collides with tiles on Y axis (basically when it is walking on the ground), adjust Y position to be exactly on the tile.
+     * Also applies boosters and jumpers the player lands on
+     *
+     * @since 0.1
+     */
+    private void adjustPositionY() {
+        this.player_pos_x += this.player_move_x * this.col_time_y;
+        this.player_move_x -= this.player_move_x * this.col_time_y;
+        if (this.player_velocity_y > 0)
+            this.player_pos_y = Math.round((this.player_pos_y + PLAYER_HEIGTH + this.player_move_y * this.col_time_y) / 24) * 24 - PLAYER_HEIGTH;
+        else
+            this.player_pos_y = Math.round((this.player_pos_y + this.player_move_y * this.col_time_y) / 24) * 24;
+
+        this.player_move_y = 0;
+        this.player_velocity_y = 0;
+
+        if ((this.collider.contact_flags & StageGrid.BOOST_R) != 0) {
+            boostPlayerRight();
+        } else if ((this.collider.contact_flags & StageGrid.BOOST_L) != 0) {
+            boostPlayerLeft();
+        } else if ((this.collider.contact_flags & StageGrid.JUMPER) != 0) {
+            if (!this.player_onJumper)
+                this.player_onJumper = true;
+        } else {
+            if (this.player_onBoost)
+                this.player_onBoost = false;
+            if (this.player_onJumper)
+                this.player_onJumper = false;
+        }
+
+        this.player_last_state = this.player_state;
+        this.player_state = PlayerState.RUNNING;
+
+        this.listener.onGrounded();
+    }
+
+    /**
+     * Sets the stage to finished
+     * @since 1.0
+     */
+    private void finishStage() {
+        this.player_last_state = this.player_state;
+        this.player_state = PlayerState.DYING; //Same animation as dying is played
+        this.player_anim_time = 0;
+
+        if (!this.player_finished) {
+            this.player_finished = true;
+            this.listener.onFinish();
+        }
+    }
+
+    /**
+     * Prepares finishing a stage by not allowing any more input
+     * @since 1.0
+     */
+    private void setNoPlayerInput() {
+        if (!this.player_no_input) {
+            this.player_no_input = true;
+            this.gravity = 1;
+            this.player_boost_x = 1.0f;
+            if (this.player_velocity_y < 0)
+                this.player_velocity_y = 0;
+            this.listener.onNoInput();
+        }
+    }
+
+    /**
+     * Moves the player to the point of a deadly collision and kills it
+     * @param col_time Time of the collision between 0 (start of the step) and 1 (end of the step)
+     * @since 1.1
+     */
+    private void killPlayer(float col_time) {
+        this.player_pos_x += this.player_move_x * col_time;
+        this.player_pos_y += this.player_move_y * col_time;
+        killPlayer();
+    }
+
+    /**
+     * Sets the player to dead and applies the dying animation. Can be called multiple times
+     * @since 1.0
+     */
+    private void killPlayer() {
+        this.player_last_state = this.player_state;
+        this.player_state = PlayerState.DYING;
+        this.player_anim_time = 0;
+
+        if (!this.player_dead) {
+            this.player_dead = true;
+            this.listener.onDeath();
+        }
+    }
+
+    /**
+     * Applies an input of the player
+     * @param input InputRecording.JUMP or InputRecording.GRAVITY
+     * @since 1.1
+     */
+    public void apply(int input) {
+        if (input == InputRecording.JUMP)
+            jump();
+        else if (input == InputRecording.GRAVITY)
+            invertGravity();
+    }
+
+    /**
+     * Inverts the gravity of the game to face upside down. Also marks the player to be in air
+     * Only works if player is not in air when method call happens
+     *
+     * @since 0.1
+     */
+    public void invertGravity() {
+        if (!this.player_inAir || !this.player_first_gravity_inAir) {
+            this.gravity *= -1;
+            this.player_inAir = true;
+            this.player_first_gravity_inAir = true;
+
+            this.player_last_state = this.player_state;
+            this.player_state = PlayerState.GRAVITY;
+            this.player_anim_time = 0;
+
+            this.listener.onGravityChanged(this.gravity);
+        }
+    }
+
+    /**
+     * Sets the vertical velocity of the player to make a small jump. Also marks the player to be in air
+     * Only works if player is not in air when method call happens
+     *
+     * @since 0.1
+     */
+    public void jump() {
+        if (!this.player_inAir) {
+            if (this.player_onJumper)
+                this.player_velocity_y = -360 * gravity;
+            else
+                this.player_velocity_y = -240 * gravity;
+            this.player_inAir = true;
+
+            this.player_last_state = this.player_state;
+            this.player_state = PlayerState.START_END_JUMP;
+            this.player_anim_time = 0;
+
+            this.listener.onJump();
+        }
+    }
+}
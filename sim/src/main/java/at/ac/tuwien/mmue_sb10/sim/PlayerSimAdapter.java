@@ -0,0 +1,29 @@
+package at.ac.tuwien.mmue_sb10.sim;
+
+/**
+ * Empty implementation of PlayerSimListener. Subclasses only override the events they are interested in
+ * @since 1.1
+ * @author Lukas Lidauer
+ */
+public class PlayerSimAdapter implements PlayerSimListener {
+    @Override
+    public void onDeath() {}
+
+    @Override
+    public void onFinish() {}
+
+    @Override
+    public void onNoInput() {}
+
+    @Override
+    public void onJump() {}
+
+    @Override
+    public void onGravityChanged(byte gravity) {}
+
+    @Override
+    public void onGrounded() {}
+
+    @Override
+    public void onAirborne() {}
+}
@@ -0,0 +1,51 @@
+package at.ac.tuwien.mmue_sb10.sim;
+
+/**
+ * Interface to get notified about events of the simulation, e.g. to play sounds or save the progress
+ * @since 1.1
+ * @author Lukas Lidauer
+ */
+public interface PlayerSimListener {
+    /**
+     * Called when the player dies
+     * @since 1.1
+     */
+    void onDeath();
+
+    /**
+     * Called when the player touches the finish
+     * @since 1.1
+     */
+    void onFinish();
+
+    /**
+     * Called when the player touches a no-input tile before the finish and input is disabled
+     * @since 1.1
+     */
+    void onNoInput();
+
+    /**
+     * Called when the player jumps
+     * @since 1.1
+     */
+    void onJump();
+
+    /**
+     * Called when the gravity is inverted
+     * @param gravity The new gravity. 1 is regular, -1 is inverted
+     * @since 1.1
+     */
+    void onGravityChanged(byte gravity);
+
+    /**
+     * Called in every step in which the player stands on a platform
+     * @since 1.1
+     */
+    void onGrounded();
+
+    /**
+     * Called in every step in which the player touches nothing
+     * @since 1.1
+     */
+    void onAirborne();
+}
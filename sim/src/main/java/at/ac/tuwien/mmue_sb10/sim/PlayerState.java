@@ -1,4 +1,4 @@
-package at.ac.tuwien.mmue_sb10;
+package at.ac.tuwien.mmue_sb10.sim;
 
 /**
  * Shows the current state of the player. Used mainly to play the proper animation
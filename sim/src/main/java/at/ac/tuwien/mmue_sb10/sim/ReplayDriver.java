@@ -0,0 +1,30 @@
+package at.ac.tuwien.mmue_sb10.sim;
+
+/**
+ * Feeds a recorded attempt back through the simulation
+ * @since 1.1
+ * @author Lukas Lidauer
+ */
+public class ReplayDriver {
+    /**
+     * Replays a recording on a simulation. The simulation has to be reset to the start of the recorded stage before.
+     * Inputs are applied before the step they were recorded in, the replay stops at the recorded end of the attempt,
+     * when the player dies or when the player finishes
+     * @param sim       Simulation that is reset to the start of the stage
+     * @param recording Recorded attempt
+     * @return The simulation after the replay
+     * @since 1.1
+     */
+    public static PlayerSim replay(PlayerSim sim, InputRecording recording) {
+        float step = recording.step_nanos / 1_000_000f;
+        int next = 0;
+        while (sim.player_tick < recording.end_tick && !sim.player_dead && !sim.player_finished) {
+            while (next < recording.size() && recording.getTick(next) <= sim.player_tick) {
+                sim.apply(recording.getInput(next));
+                next++;
+            }
+            sim.update(step);
+        }
+        return sim;
+    }
+}
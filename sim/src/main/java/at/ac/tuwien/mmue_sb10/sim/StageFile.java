@@ -0,0 +1,77 @@
+/**
+ * Reads the stage files of the assets folder without depending on Android
+ * @author Lukas Lidauer
+ */
+
+package at.ac.tuwien.mmue_sb10.sim;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+/**
+ * This class holds the parsed content of a stage file (stageN.txt)
+ * @since 1.1
+ * @author Lukas Lidauer
+ */
+public class StageFile {
+    public static final int NO_TILE = -1; //tile id of empty tiles ("--" in the stage file)
+
+    public float scale; //scaling of the stage. scale * density = stage_scale
+    public String music; //resource name of the bg music
+    public String background; //resource name of the background drawable
+    public int player_start_x, player_start_y; //starting position of player in tiles
+    public float player_velocity_x; //how far player moves forward
+    public int width; //width in tiles
+    public int heigth; //heigth in tiles
+    public int[][] tiles; //array of the tile numbers, NO_TILE if there is no tile
+
+    /**
+     * Parses a stage file
+     * @param in Stream of the stage file. Is closed after reading
+     * @return The parsed stage file
+     * @throws IOException If the stream can not be read
+     * @since 1.1
+     */
+    public static StageFile read(InputStream in) throws IOException {
+        StageFile file = new StageFile();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                switch (line) {
+                    case "#info":
+                        file.scale = Float.parseFloat(reader.readLine().split("=")[1]);
+                        file.music = reader.readLine().split("=")[1];
+                        file.background = reader.readLine().split("=")[1];
+                        break;
+                    case "#player":
+                        file.player_start_x = Integer.parseInt(reader.readLine().split("=")[1]);
+                        file.player_start_y = Integer.parseInt(reader.readLine().split("=")[1]);
+                        file.player_velocity_x = Float.parseFloat(reader.readLine().split("=")[1]);
+                        break;
+                    case "#size":
+                        file.width = Integer.parseInt(reader.readLine().split("=")[1]);
+                        file.heigth = Integer.parseInt(reader.readLine().split("=")[1]);
+                        file.tiles = new int[file.width][file.heigth];
+                        break;
+                    case "#tiles":
+                        for (int y = 0; y < file.heigth; y++) {
+                            String[] tilesInLine = reader.readLine().split(" ");
+                            for (int x = 0; x < file.width; x++) {
+                                if (x < tilesInLine.length && !tilesInLine[x].equals("--"))
+                                    file.tiles[x][y] = Integer.parseInt(tilesInLine[x]);
+                                else
+                                    file.tiles[x][y] = NO_TILE;
+                            }
+                        }
+                        break;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return file;
+    }
+}
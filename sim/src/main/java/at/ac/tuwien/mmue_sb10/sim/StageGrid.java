@@ -0,0 +1,85 @@
+/**
+ * Collision data of a stage
+ * @author Lukas Lidauer
+ */
+
+package at.ac.tuwien.mmue_sb10.sim;
+
+/**
+ * This class holds the tile behaviors of a stage that are used for collision detection.
+ * Every tile is stored as one byte of flags in a flat array, one row of the stage after another,
+ * so several tiles can be tested with a single OR and neighbouring tiles of a row lie next to each other in memory
+ * @since 1.1
+ * @author Lukas Lidauer
+ */
+public class StageGrid {
+    public static final int SOLID = 1; //tile can not be passed
+    public static final int DEADLY = 1 << 1; //tile kills the player
+    public static final int INVERTER = 1 << 2; //tile inverts the x direction of the player
+    public static final int BOOST_R = 1 << 3; //tile speeds up players moving right and slows down players moving left
+    public static final int BOOST_L = 1 << 4; //tile speeds up players moving left and slows down players moving right
+    public static final int FINISH = 1 << 5; //tile finishes the stage
+    public static final int NO_INPUT = 1 << 6; //tile disables the input before the finish
+    public static final int JUMPER = 1 << 7; //tile lets the player jump higher
+
+    /**
+     * Flags of the behaviors in res/values/arrays.xml
+     * 0: None, 1: Solid, 2: Dead, 3: X-Dir, 4: Speedup-Right, 5: Speedup-Left, 6: Finish, 7: No-Move, 8: High-Jump
+     */
+    private static final int[] BEHAVIOR_FLAGS = {0, SOLID, DEADLY, INVERTER, SOLID | BOOST_R, SOLID | BOOST_L, FINISH, NO_INPUT, SOLID | JUMPER};
+
+    public final int width; //width in tiles
+    public final int heigth; //heigth in tiles
+    public final byte[] tiles; //flags of every tile. tile (x, y) is at index y * width + x
+
+    /**
+     * Creates an empty grid where no tile has a behavior
+     * @param width  Width in tiles
+     * @param heigth Heigth in tiles
+     * @since 1.1
+     */
+    public StageGrid(int width, int heigth) {
+        this.width = width;
+        this.heigth = heigth;
+        this.tiles = new byte[width * heigth];
+    }
+
+    /**
+     * Creates the grid of a stage file
+     * @param file            Parsed stage file
+     * @param tiles_collision Behavior of every tile in the tileset. Uses the tile ids of the stage file as index
+     * @return Grid with the behaviors of all tiles of the stage
+     * @since 1.1
+     */
+    public static StageGrid fromStageFile(StageFile file, int[] tiles_collision) {
+        StageGrid grid = new StageGrid(file.width, file.heigth);
+        for (int y = 0; y < file.heigth; y++) {
+            for (int x = 0; x < file.width; x++) {
+                if (file.tiles[x][y] != StageFile.NO_TILE)
+                    grid.tiles[y * file.width + x] = (byte) flagsOf(tiles_collision[file.tiles[x][y]]);
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * Converts a behavior of res/values/arrays.xml to tile flags
+     * @param behavior Behavior between 0 and 8
+     * @return Flags of the behavior
+     * @since 1.1
+     */
+    public static int flagsOf(int behavior) {
+        return BEHAVIOR_FLAGS[behavior];
+    }
+
+    /**
+     * Returns the flags of a tile
+     * @param x Position x in tiles
+     * @param y Position y in tiles
+     * @return Flags of the tile
+     * @since 1.1
+     */
+    public int flagsAt(int x, int y) {
+        return this.tiles[y * this.width + x] & 0xFF;
+    }
+}
@@ -0,0 +1,139 @@
+package at.ac.tuwien.mmue_sb10.sim;
+
+/**
+ * Swept collision detection of a hitbox against the tiles of a StageGrid.
+ * A sweep walks every tile row or column the hitbox passes through during a step and returns the earliest contact time,
+ * so the cost of a step only depends on the swept area and not on the speed of the player or the size of the hitbox
+ * @since 1.1
+ * @author Lukas Lidauer
+ */
+public class SweptCollider {
+    public static final float NO_CONTACT = Float.POSITIVE_INFINITY; //returned by sweeps that do not hit a blocking tile
+
+    private static final float EPSILON = 0.01f; //edges closer than this to a tile border count as touching it
+
+    private StageGrid grid; //collision data of the current stage
+    public int contact_flags; //flags of all tiles hit by the last sweep
+
+    /**
+     * Sets the stage that is used for collision detection
+     * @param grid Collision data of the stage
+     * @since 1.1
+     */
+    public void setGrid(StageGrid grid) {
+        this.grid = grid;
+    }
+
+    /**
+     * Moves the hitbox on the y axis and finds the first blocking tile row it touches
+     * @param left   Left edge of the hitbox in px
+     * @param top    Top edge of the hitbox in px
+     * @param width  Width of the hitbox in px
+     * @param heigth Heigth of the hitbox in px
+     * @param dy     Movement on the y axis in px
+     * @return Time of the contact between 0 (start of the step) and 1 (end of the step) or NO_CONTACT
+     * @since 1.1
+     */
+    public float sweepY(float left, float top, float width, float heigth, float dy) {
+        int col_first = (int) Math.floor(left / 24);
+        int col_last = (int) Math.floor((left + width - EPSILON) / 24);
+        if (dy > 0) {
+            float edge = top + heigth;
+            int row_last = (int) Math.ceil((edge + dy) / 24) - 1;
+            for (int row = (int) Math.ceil((edge - EPSILON) / 24); row <= row_last; row++) {
+                if ((this.contact_flags = scanRow(row, col_first, col_last)) != 0)
+                    return Math.max(0, (row * 24 - edge) / dy);
+            }
+        } else if (dy < 0) {
+            int row_last = (int) Math.floor((top + dy) / 24);
+            for (int row = (int) Math.floor((top + EPSILON) / 24) - 1; row >= row_last; row--) {
+                if ((this.contact_flags = scanRow(row, col_first, col_last)) != 0)
+                    return Math.max(0, ((row + 1) * 24 - top) / dy);
+            }
+        }
+        this.contact_flags = 0;
+        return NO_CONTACT;
+    }
+
+    /**
+     * Moves the hitbox on the x axis and finds the first blocking tile column it touches
+     * @param left   Left edge of the hitbox in px
+     * @param top    Top edge of the hitbox in px
+     * @param width  Width of the hitbox in px
+     * @param heigth Heigth of the hitbox in px
+     * @param dx     Movement on the x axis in px
+     * @return Time of the contact between 0 (start of the step) and 1 (end of the step) or NO_CONTACT
+     * @since 1.1
+     */
+    public float sweepX(float left, float top, float width, float heigth, float dx) {
+        int row_first = (int) Math.floor(top / 24);
+        int row_last = (int) Math.floor((top + heigth - EPSILON) / 24);
+        if (dx > 0) {
+            float edge = left + width;
+            int col_last = (int) Math.ceil((edge + dx) / 24) - 1;
+            for (int col = (int) Math.ceil((edge - EPSILON) / 24); col <= col_last; col++) {
+                if ((this.contact_flags = scanColumn(col, row_first, row_last)) != 0)
+                    return Math.max(0, (col * 24 - edge) / dx);
+            }
+        } else if (dx < 0) {
+            int col_last = (int) Math.floor((left + dx) / 24);
+            for (int col = (int) Math.floor((left + EPSILON) / 24) - 1; col >= col_last; col--) {
+                if ((this.contact_flags = scanColumn(col, row_first, row_last)) != 0)
+                    return Math.max(0, ((col + 1) * 24 - left) / dx);
+            }
+        }
+        this.contact_flags = 0;
+        return NO_CONTACT;
+    }
+
+    /**
+     * Collects the behaviors of all tiles the hitbox overlaps
+     * @param left   Left edge of the hitbox in px
+     * @param top    Top edge of the hitbox in px
+     * @param width  Width of the hitbox in px
+     * @param heigth Heigth of the hitbox in px
+     * @return Flags of all overlapped tiles combined
+     * @since 1.1
+     */
+    public int overlap(float left, float top, float width, float heigth) {
+        int col_first = Math.max((int) Math.floor(left / 24), 0);
+        int col_last = Math.min((int) Math.floor((left + width - EPSILON) / 24), this.grid.width - 1);
+        int row_first = Math.max((int) Math.floor(top / 24), 0);
+        int row_last = Math.min((int) Math.floor((top + heigth - EPSILON) / 24), this.grid.heigth - 1);
+        int flags = 0;
+        for (int row = row_first; row <= row_last; row++) {
+            for (int i = row * this.grid.width + col_first, end = row * this.grid.width + col_last; i <= end; i++) {
+                flags |= this.grid.tiles[i];
+            }
+        }
+        return flags & 0xFF;
+    }
+
+    /**
+     * Looks for blocking tiles in a row of the grid
+     * @return Flags of all tiles in the row if at least one of them blocks, otherwise 0
+     */
+    private int scanRow(int row, int col_first, int col_last) {
+        if (row < 0 || row >= this.grid.heigth)
+            return 0;
+        int flags = 0;
+        for (int i = row * this.grid.width + Math.max(col_first, 0), end = row * this.grid.width + Math.min(col_last, this.grid.width - 1); i <= end; i++) {
+            flags |= this.grid.tiles[i];
+        }
+        return (flags & (StageGrid.SOLID | StageGrid.DEADLY)) != 0 ? flags & 0xFF : 0;
+    }
+
+    /**
+     * Looks for blocking tiles in a column of the grid
+     * @return Flags of all tiles in the column if at least one of them blocks, otherwise 0
+     */
+    private int scanColumn(int col, int row_first, int row_last) {
+        if (col < 0 || col >= this.grid.width)
+            return 0;
+        int flags = 0;
+        for (int i = Math.max(row_first, 0) * this.grid.width + col, end = Math.min(row_last, this.grid.heigth - 1) * this.grid.width + col; i <= end; i += this.grid.width) {
+            flags |= this.grid.tiles[i];
+        }
+        return (flags & (StageGrid.SOLID | StageGrid.DEADLY)) != 0 ? flags & 0xFF : 0;
+    }
+}
@@ -0,0 +1,65 @@
+package at.ac.tuwien.mmue_sb10.sim.tools;
+
+/**
+ * Results of a batch of simulation runs on one stage. Reports of parts of a batch are merged into one
+ * @since 1.1
+ * @author Lukas Lidauer
+ */
+public class BatchReport {
+    public final int level; //ID of the stage
+    public int runs; //number of simulated attempts
+    public int finished; //attempts that reached the finish
+    public int died; //attempts that died on the stage
+    public int died_out_of_bounds; //attempts that died by leaving the stage
+    public int tunnelled; //attempts where the hitbox ended a step inside a solid tile
+    public int out_of_bounds; //attempts where the player was alive outside of the stage
+    public int stuck; //attempts where the player did not move for a while or never ended
+    public int replay_mismatches; //recorded attempts that did not end in the recorded state
+    public long steps; //simulated steps
+    public long step_nanos; //time spent in PlayerSim.update
+    public long max_step_nanos; //slowest single step
+    public String first_failure; //description of the first failed attempt, null if there was none
+
+    public BatchReport(int level) {
+        this.level = level;
+    }
+
+    /**
+     * Adds the results of another part of the batch
+     * @param other Report of the same stage
+     * @return this
+     * @since 1.1
+     */
+    public BatchReport merge(BatchReport other) {
+        this.runs += other.runs;
+        this.finished += other.finished;
+        this.died += other.died;
+        this.died_out_of_bounds += other.died_out_of_bounds;
+        this.tunnelled += other.tunnelled;
+        this.out_of_bounds += other.out_of_bounds;
+        this.stuck += other.stuck;
+        this.replay_mismatches += other.replay_mismatches;
+        this.steps += other.steps;
+        this.step_nanos += other.step_nanos;
+        this.max_step_nanos = Math.max(this.max_step_nanos, other.max_step_nanos);
+        if (this.first_failure == null)
+            this.first_failure = other.first_failure;
+        return this;
+    }
+
+    /**
+     * @return true if no physics error was found
+     * @since 1.1
+     */
+    public boolean passed() {
+        return this.tunnelled == 0 && this.out_of_bounds == 0 && this.stuck == 0 && this.replay_mismatches == 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("stage%-3d runs=%-6d finished=%-5d died=%-6d (out of bounds %d) tunnelled=%d out_of_bounds=%d stuck=%d replay_mismatches=%d steps=%d ns/step=%.0f max=%dns%s",
+                this.level, this.runs, this.finished, this.died, this.died_out_of_bounds, this.tunnelled, this.out_of_bounds, this.stuck, this.replay_mismatches,
+                this.steps, this.steps == 0 ? 0.0 : (double) this.step_nanos / this.steps, this.max_step_nanos,
+                this.first_failure == null ? "" : "\n        first failure: " + this.first_failure);
+    }
+}
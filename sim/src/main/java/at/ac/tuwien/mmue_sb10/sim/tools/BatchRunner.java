@@ -0,0 +1,230 @@
+package at.ac.tuwien.mmue_sb10.sim.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import at.ac.tuwien.mmue_sb10.sim.InputRecording;
+import at.ac.tuwien.mmue_sb10.sim.PlayerSim;
+import at.ac.tuwien.mmue_sb10.sim.PlayerSimAdapter;
+import at.ac.tuwien.mmue_sb10.sim.PlayerState;
+import at.ac.tuwien.mmue_sb10.sim.ReplayDriver;
+import at.ac.tuwien.mmue_sb10.sim.StageGrid;
+
+/**
+ * Plays randomized and recorded inputs against every stage in parallel and checks the physics for errors.
+ * Usage: BatchRunner assets_dir arrays_xml [runs_per_stage] [replays_dir]
+ * @since 1.1
+ * @author Lukas Lidauer
+ */
+public class BatchRunner {
+    private static final int MAX_STEPS = 120 * 120; //an attempt that takes longer than 2 minutes counts as stuck
+    private static final int STUCK_STEPS = 240; //player did not move for 2 seconds
+    private static final int RUNS_PER_TASK = 64; //runs of a stage that are simulated by one task without splitting
+
+    /**
+     * Simulates a range of randomized runs on one stage. Splits itself until the range is small enough
+     */
+    private static class StageTask extends RecursiveTask<BatchReport> {
+        private static final long serialVersionUID = 1L;
+
+        private final StageCatalog.Entry stage;
+        private final int first_run;
+        private final int last_run; //exclusive
+
+        StageTask(StageCatalog.Entry stage, int first_run, int last_run) {
+            this.stage = stage;
+            this.first_run = first_run;
+            this.last_run = last_run;
+        }
+
+        @Override
+        protected BatchReport compute() {
+            if (this.last_run - this.first_run > RUNS_PER_TASK) {
+                int mid = (this.first_run + this.last_run) >>> 1;
+                StageTask left = new StageTask(this.stage, this.first_run, mid);
+                left.fork();
+                BatchReport right = new StageTask(this.stage, mid, this.last_run).compute();
+                return right.merge(left.join());
+            }
+            BatchReport report = new BatchReport(this.stage.level);
+            PlayerSim sim = new PlayerSim(new PlayerSimAdapter());
+            for (int run = this.first_run; run < this.last_run; run++) {
+                //every run has its own seed, so a failure can be reproduced by its run number
+                SplittableRandom random = new SplittableRandom(((long) this.stage.level << 32) ^ run);
+                int input_chance = 20 + random.nextInt(220); //one input every 20 to 240 steps on average
+                reset(sim, this.stage);
+                simulate(sim, this.stage.grid, report, random, input_chance, "run " + run);
+            }
+            return report;
+        }
+    }
+
+    /**
+     * Replays recorded attempts of one stage and checks that they end in the recorded state
+     */
+    private static class ReplayTask extends RecursiveTask<BatchReport> {
+        private static final long serialVersionUID = 1L;
+
+        private final StageCatalog.Entry stage;
+        private final List<InputRecording> recordings;
+
+        ReplayTask(StageCatalog.Entry stage, List<InputRecording> recordings) {
+            this.stage = stage;
+            this.recordings = recordings;
+        }
+
+        @Override
+        protected BatchReport compute() {
+            BatchReport report = new BatchReport(this.stage.level);
+            PlayerSim sim = new PlayerSim(new PlayerSimAdapter());
+            for (InputRecording recording : this.recordings) {
+                reset(sim, this.stage);
+                ReplayDriver.replay(sim, recording);
+                report.runs++;
+                if (!recording.matches(sim)) {
+                    report.replay_mismatches++;
+                    if (report.first_failure == null)
+                        report.first_failure = String.format("replay ended at step %d x=%.2f y=%.2f, recorded step %d x=%.2f y=%.2f",
+                                sim.player_tick, sim.player_pos_x, sim.player_pos_y, recording.end_tick, recording.end_pos_x, recording.end_pos_y);
+                }
+            }
+            return report;
+        }
+    }
+
+    private static void reset(PlayerSim sim, StageCatalog.Entry stage) {
+        sim.reset(stage.grid, stage.file.player_start_x, stage.file.player_start_y, stage.file.player_velocity_x, PlayerState.IDLE);
+    }
+
+    /**
+     * Simulates one attempt with random inputs and checks every step
+     */
+    private static void simulate(PlayerSim sim, StageGrid grid, BatchReport report, SplittableRandom random, int input_chance, String name) {
+        float stuck_x = sim.player_pos_x;
+        float stuck_y = sim.player_pos_y;
+        int stuck_tick = 0;
+        String failure = null;
+
+        report.runs++;
+        while (!sim.player_dead && !sim.player_finished) {
+            if (sim.player_tick >= MAX_STEPS || sim.player_tick - stuck_tick >= STUCK_STEPS) {
+                report.stuck++;
+                failure = "stuck";
+                break;
+            }
+            if (!sim.player_no_input && random.nextInt(input_chance) == 0)
+                sim.apply(random.nextInt(2));
+
+            long start = System.nanoTime();
+            sim.update(PlayerSim.STEP_MS);
+            long nanos = System.nanoTime() - start;
+            report.steps++;
+            report.step_nanos += nanos;
+            if (nanos > report.max_step_nanos)
+                report.max_step_nanos = nanos;
+
+            if (Math.abs(sim.player_pos_x - stuck_x) >= 1 || Math.abs(sim.player_pos_y - stuck_y) >= 1) {
+                stuck_x = sim.player_pos_x;
+                stuck_y = sim.player_pos_y;
+                stuck_tick = sim.player_tick;
+            }
+
+            boolean outside = sim.player_pos_x < 0 || sim.player_pos_y < 0
+                    || sim.player_pos_x + PlayerSim.PLAYER_WIDTH > grid.width * 24 || sim.player_pos_y + PlayerSim.PLAYER_HEIGTH > grid.heigth * 24;
+            if (sim.player_dead) {
+                if (outside)
+                    report.died_out_of_bounds++;
+            } else if (outside) {
+                report.out_of_bounds++;
+                failure = "alive out of bounds";
+                break;
+            } else if ((overlap(grid, sim.player_pos_x, sim.player_pos_y) & StageGrid.SOLID) != 0) {
+                report.tunnelled++;
+                failure = "inside a solid tile";
+                break;
+            }
+        }
+
+        if (sim.player_finished)
+            report.finished++;
+        else if (sim.player_dead)
+            report.died++;
+        if (failure != null && report.first_failure == null)
+            report.first_failure = String.format("%s: %s at step %d x=%.2f y=%.2f", name, failure, sim.player_tick, sim.player_pos_x, sim.player_pos_y);
+    }
+
+    /**
+     * Flags of the tiles the hitbox overlaps by more than a pixel. Independent of SweptCollider, so errors of the sweep are found
+     */
+    private static int overlap(StageGrid grid, float x, float y) {
+        int flags = 0;
+        for (int row = (int) ((y + 1) / 24); row <= (int) ((y + PlayerSim.PLAYER_HEIGTH - 1) / 24); row++)
+            for (int col = (int) ((x + 1) / 24); col <= (int) ((x + PlayerSim.PLAYER_WIDTH - 1) / 24); col++)
+                flags |= grid.flagsAt(col, row);
+        return flags;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BatchRunner assets_dir arrays_xml [runs_per_stage] [replays_dir]");
+            System.exit(2);
+        }
+        List<StageCatalog.Entry> stages = StageCatalog.load(new File(args[0]), new File(args[1]));
+        int runs = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+        File replays = args.length > 3 ? new File(args[3]) : null;
+
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        long start = System.nanoTime();
+        List<RecursiveTask<BatchReport>> tasks = new ArrayList<>();
+        List<RecursiveTask<BatchReport>> replay_tasks = new ArrayList<>();
+        for (StageCatalog.Entry stage : stages) {
+            StageTask task = new StageTask(stage, 0, runs);
+            pool.execute(task);
+            tasks.add(task);
+            List<InputRecording> recordings = readReplays(replays, stage.level);
+            if (!recordings.isEmpty()) {
+                ReplayTask replay = new ReplayTask(stage, recordings);
+                pool.execute(replay);
+                replay_tasks.add(replay);
+            }
+        }
+
+        boolean passed = true;
+        long steps = 0;
+        for (RecursiveTask<BatchReport> task : tasks) {
+            BatchReport report = task.join();
+            passed &= report.passed();
+            steps += report.steps;
+            System.out.println(report);
+        }
+        for (RecursiveTask<BatchReport> task : replay_tasks) {
+            BatchReport report = task.join();
+            passed &= report.passed();
+            System.out.println("replays " + report);
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        System.out.printf("%d stages, %d steps in %d ms on %d threads: %s%n", stages.size(), steps, millis, pool.getParallelism(), passed ? "PASSED" : "FAILED");
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * Reads the recordings of a stage in the layout of the app's ReplayStore (replays/stageN/*.rec)
+     */
+    private static List<InputRecording> readReplays(File replays, int level) throws IOException {
+        List<InputRecording> recordings = new ArrayList<>();
+        File[] files = replays == null ? null : new File(replays, "stage" + level).listFiles();
+        if (files == null)
+            return recordings;
+        for (File file : files) {
+            if (file.getName().endsWith(".rec"))
+                recordings.add(InputRecording.fromBytes(Files.readAllBytes(file.toPath())));
+        }
+        return recordings;
+    }
+}
@@ -0,0 +1,255 @@
+package at.ac.tuwien.mmue_sb10.sim.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+import at.ac.tuwien.mmue_sb10.sim.InputRecording;
+import at.ac.tuwien.mmue_sb10.sim.PlayerSim;
+import at.ac.tuwien.mmue_sb10.sim.PlayerSimAdapter;
+import at.ac.tuwien.mmue_sb10.sim.PlayerState;
+import at.ac.tuwien.mmue_sb10.sim.ReplayDriver;
+
+/**
+ * Searches every stage for a way to the finish that needs as few inputs as possible.
+ * The search expands all states reachable with n inputs before any state that needs n + 1 inputs. Between inputs the player just runs,
+ * inputs are only tried every DECISION_STEPS steps. States that only differ by less than the discretization are visited once.
+ * Usage: SolvabilityAnalyzer assets_dir arrays_xml [level|all] [solutions_dir]
+ * The verified solutions are written to solutions_dir/stageN.rec. They are used as camera paths by the map renderer benchmark
+ * @since 1.1
+ * @author Lukas Lidauer
+ */
+public class SolvabilityAnalyzer {
+    private static final int DECISION_STEPS = 6; //inputs are tried every 50ms
+    private static final int MAX_STEPS = 120 * 120; //runs longer than 2 minutes are not followed
+    private static final long MAX_STATES = 20_000_000; //search gives up above this number of visited states
+    private static final int NODES_PER_TASK = 256; //nodes that are expanded by one task without splitting
+    private static final int HOTSPOTS = 5; //number of death hotspots that are reported
+
+    private static final PlayerSimAdapter NO_LISTENER = new PlayerSimAdapter();
+
+    /**
+     * A state right after an input, with the inputs that led to it
+     */
+    private static class Node {
+        final PlayerSim sim;
+        final Node parent;
+        final int input; //input applied at the tick of sim, -1 for the start of the stage
+
+        Node(PlayerSim sim, Node parent, int input) {
+            this.sim = sim;
+            this.parent = parent;
+            this.input = input;
+        }
+    }
+
+    /**
+     * Nodes found by expanding a part of the frontier
+     */
+    private static class Expansion {
+        final List<Node> next = new ArrayList<>(); //nodes that need one more input
+        final List<Node> finished = new ArrayList<>(); //nodes whose runs reached the finish without another input
+        final Map<Integer, Integer> deaths = new HashMap<>(); //tile index and number of deaths
+
+        Expansion merge(Expansion other) {
+            this.next.addAll(other.next);
+            this.finished.addAll(other.finished);
+            for (Map.Entry<Integer, Integer> death : other.deaths.entrySet())
+                this.deaths.merge(death.getKey(), death.getValue(), Integer::sum);
+            return this;
+        }
+    }
+
+    /**
+     * Lets the players of a range of the frontier run without input and branches off a node for every input that changes something
+     */
+    private static class ExpandTask extends RecursiveTask<Expansion> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Node> frontier;
+        private final int first;
+        private final int last; //exclusive
+        private final Set<Long> visited;
+        private final int width; //width of the stage in tiles
+
+        ExpandTask(List<Node> frontier, int first, int last, Set<Long> visited, int width) {
+            this.frontier = frontier;
+            this.first = first;
+            this.last = last;
+            this.visited = visited;
+            this.width = width;
+        }
+
+        @Override
+        protected Expansion compute() {
+            if (this.last - this.first > NODES_PER_TASK) {
+                int mid = (this.first + this.last) >>> 1;
+                ExpandTask left = new ExpandTask(this.frontier, this.first, mid, this.visited, this.width);
+                left.fork();
+                Expansion right = new ExpandTask(this.frontier, mid, this.last, this.visited, this.width).compute();
+                return left.join().merge(right);
+            }
+            Expansion expansion = new Expansion();
+            PlayerSim sim = new PlayerSim(NO_LISTENER);
+            for (int i = this.first; i < this.last; i++)
+                expand(this.frontier.get(i), sim, expansion);
+            return expansion;
+        }
+
+        private void expand(Node node, PlayerSim sim, Expansion expansion) {
+            sim.copyFrom(node.sim);
+            boolean branch = node.input < 0; //the node itself was created by an input at this tick
+            while (true) {
+                if (!this.visited.add(key(sim)))
+                    return;
+                if (branch && !sim.player_no_input) {
+                    branch(node, sim, InputRecording.JUMP, expansion);
+                    branch(node, sim, InputRecording.GRAVITY, expansion);
+                }
+                branch = true;
+
+                for (int step = 0; step < DECISION_STEPS; step++) {
+                    sim.update(PlayerSim.STEP_MS);
+                    if (sim.player_finished) {
+                        PlayerSim finished = new PlayerSim(NO_LISTENER);
+                        finished.copyFrom(sim);
+                        expansion.finished.add(new Node(finished, node, -1));
+                        return;
+                    } else if (sim.player_dead) {
+                        int x = Math.max(0, Math.min(this.width - 1, (int) ((sim.player_pos_x + PlayerSim.PLAYER_WIDTH / 2f) / 24)));
+                        int y = Math.max(0, (int) ((sim.player_pos_y + PlayerSim.PLAYER_HEIGTH / 2f) / 24));
+                        expansion.deaths.merge(y * this.width + x, 1, Integer::sum);
+                        return;
+                    } else if (sim.player_tick >= MAX_STEPS) {
+                        return;
+                    }
+                }
+            }
+        }
+
+        private static void branch(Node node, PlayerSim sim, int input, Expansion expansion) {
+            PlayerSim child = new PlayerSim(NO_LISTENER);
+            child.copyFrom(sim);
+            child.apply(input);
+            //inputs that are ignored (jumping in air, ...) lead to the same state as running on
+            if (child.gravity != sim.gravity || child.player_velocity_y != sim.player_velocity_y)
+                expansion.next.add(new Node(child, node, input));
+        }
+    }
+
+    /**
+     * Discretizes the state of the player. States with the same key are treated as equal
+     */
+    static long key(PlayerSim sim) {
+        long x = Math.round(sim.player_pos_x) & 0xFFFF;
+        long y = Math.round(sim.player_pos_y) & 0xFFFF;
+        long velocity_y = Math.round(sim.player_velocity_y / 7.5f) & 0xFFF;
+        long boost = Math.round(Math.log(sim.player_boost_x) / Math.log(1.5)) & 0xF;
+        long flags = (sim.gravity > 0 ? 1 : 0)
+                | (sim.player_inAir ? 2 : 0)
+                | (sim.player_first_gravity_inAir ? 4 : 0)
+                | (sim.player_inInverter ? 8 : 0)
+                | (sim.player_onBoost ? 16 : 0)
+                | (sim.player_onJumper ? 32 : 0)
+                | (sim.player_no_input ? 64 : 0)
+                | (sim.player_velocity_x > 0 ? 128 : 0);
+        return x | y << 16 | velocity_y << 32 | boost << 44 | flags << 48;
+    }
+
+    /**
+     * Searches a stage for the solution with the fewest inputs
+     * @param stage Stage to analyze
+     * @param pool  Pool the frontier is expanded on
+     * @return The result of the search
+     * @since 1.1
+     */
+    public static SolvabilityReport analyze(StageCatalog.Entry stage, ForkJoinPool pool) {
+        long start = System.nanoTime();
+        SolvabilityReport report = new SolvabilityReport(stage.level);
+        report.width = stage.grid.width;
+        Set<Long> visited = ConcurrentHashMap.newKeySet();
+        Map<Integer, Integer> deaths = new HashMap<>();
+
+        PlayerSim root = new PlayerSim(NO_LISTENER);
+        root.reset(stage.grid, stage.file.player_start_x, stage.file.player_start_y, stage.file.player_velocity_x, PlayerState.IDLE);
+        List<Node> frontier = Collections.singletonList(new Node(root, null, -1));
+        Node solution = null;
+        while (!frontier.isEmpty() && solution == null) {
+            if (visited.size() > MAX_STATES) {
+                report.exhausted = true;
+                break;
+            }
+            Expansion expansion = pool.invoke(new ExpandTask(frontier, 0, frontier.size(), visited, stage.grid.width));
+            for (Map.Entry<Integer, Integer> death : expansion.deaths.entrySet())
+                deaths.merge(death.getKey(), death.getValue(), Integer::sum);
+            for (Node finished : expansion.finished) {
+                //prefer the fastest of all solutions with the same number of inputs
+                if (solution == null || finished.sim.player_tick < solution.sim.player_tick)
+                    solution = finished;
+            }
+            frontier = expansion.next;
+        }
+
+        report.states = visited.size();
+        if (solution != null) {
+            report.reachable = true;
+            report.solution = toRecording(stage.level, solution);
+            PlayerSim replay = new PlayerSim(NO_LISTENER);
+            replay.reset(stage.grid, stage.file.player_start_x, stage.file.player_start_y, stage.file.player_velocity_x, PlayerState.IDLE);
+            report.verified = ReplayDriver.replay(replay, report.solution).player_finished;
+        }
+        List<Map.Entry<Integer, Integer>> hotspots = new ArrayList<>(deaths.entrySet());
+        hotspots.sort((a, b) -> Integer.compare(b.getValue(), a.getValue()));
+        report.death_hotspots.addAll(hotspots.subList(0, Math.min(HOTSPOTS, hotspots.size())));
+        report.millis = (System.nanoTime() - start) / 1_000_000;
+        return report;
+    }
+
+    /**
+     * Collects the inputs on the way to a node
+     */
+    private static InputRecording toRecording(int level, Node node) {
+        List<Node> path = new ArrayList<>();
+        for (Node n = node; n != null; n = n.parent) {
+            if (n.input >= 0)
+                path.add(n);
+        }
+        InputRecording recording = new InputRecording(level, PlayerSim.STEP_NANOS);
+        for (int i = path.size() - 1; i >= 0; i--)
+            recording.record(path.get(i).sim.player_tick, path.get(i).input);
+        recording.end(node.sim);
+        return recording;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: SolvabilityAnalyzer assets_dir arrays_xml [level|all] [solutions_dir]");
+            System.exit(2);
+        }
+        List<StageCatalog.Entry> stages = StageCatalog.load(new File(args[0]), new File(args[1]));
+        String level = args.length > 2 ? args[2] : "all";
+        File solutions = args.length > 3 ? new File(args[3]) : null;
+        if (solutions != null && !solutions.isDirectory() && !solutions.mkdirs())
+            throw new IOException("Cannot create " + solutions);
+        boolean solvable = true;
+        for (StageCatalog.Entry stage : stages) {
+            if (!level.equals("all") && stage.level != Integer.parseInt(level))
+                continue;
+            SolvabilityReport report = analyze(stage, ForkJoinPool.commonPool());
+            solvable &= report.reachable && report.verified;
+            System.out.println(report);
+            if (solutions != null && report.verified)
+                Files.write(new File(solutions, "stage" + stage.level + ".rec").toPath(), report.solution.toBytes());
+        }
+        System.exit(solvable ? 0 : 1);
+    }
+}
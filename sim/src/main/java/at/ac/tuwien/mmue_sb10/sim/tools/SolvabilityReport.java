@@ -0,0 +1,49 @@
+package at.ac.tuwien.mmue_sb10.sim.tools;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import at.ac.tuwien.mmue_sb10.sim.InputRecording;
+
+/**
+ * Result of the solvability analysis of one stage
+ * @since 1.1
+ * @author Lukas Lidauer
+ */
+public class SolvabilityReport {
+    public final int level; //ID of the stage
+    public boolean reachable; //finish can be reached
+    public boolean exhausted; //search stopped at its state limit before a result was found
+    public InputRecording solution; //inputs of a solution with the minimum number of inputs, null if the finish is not reachable
+    public boolean verified; //replaying the solution reaches the finish
+    public long states; //distinct states visited
+    public long millis; //duration of the analysis
+    public final List<Map.Entry<Integer, Integer>> death_hotspots = new ArrayList<>(); //tile index (y * width + x) and number of deaths, most deaths first
+    public int width; //width of the stage in tiles, used to print hotspots
+
+    public SolvabilityReport(int level) {
+        this.level = level;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(String.format("stage%-3d ", this.level));
+        if (this.reachable)
+            sb.append(String.format("reachable with %d inputs in %.2f s%s", this.solution.size(), this.solution.end_tick * (this.solution.step_nanos / 1e9), this.verified ? "" : " (replay did NOT verify)"));
+        else
+            sb.append(this.exhausted ? "unknown, state limit reached" : "NOT reachable");
+        sb.append(String.format(", %d states in %d ms", this.states, this.millis));
+        if (this.reachable) {
+            sb.append("\n        inputs:");
+            for (int i = 0; i < this.solution.size(); i++)
+                sb.append(' ').append(this.solution.getInput(i) == InputRecording.JUMP ? 'J' : 'G').append('@').append(this.solution.getTick(i));
+        }
+        if (!this.death_hotspots.isEmpty()) {
+            sb.append("\n        death hotspots:");
+            for (Map.Entry<Integer, Integer> hotspot : this.death_hotspots)
+                sb.append(String.format(" (%d,%d)x%d", hotspot.getKey() % this.width, hotspot.getKey() / this.width, hotspot.getValue()));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,86 @@
+package at.ac.tuwien.mmue_sb10.sim.tools;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import at.ac.tuwien.mmue_sb10.sim.StageFile;
+import at.ac.tuwien.mmue_sb10.sim.StageGrid;
+
+/**
+ * Loads all stages of the app's assets folder for headless tools
+ * @since 1.1
+ * @author Lukas Lidauer
+ */
+public class StageCatalog {
+    private static final Pattern STAGE_NAME = Pattern.compile("stage(-?\\d+)\\.txt");
+    private static final Pattern COLLISION_ARRAY = Pattern.compile("<integer-array name=\"collision\">(.*?)</integer-array>", Pattern.DOTALL);
+    private static final Pattern ITEM = Pattern.compile("<item>(\\d+)</item>");
+
+    /**
+     * A stage file together with its collision data
+     */
+    public static class Entry {
+        public final int level; //ID of the stage
+        public final StageFile file; //parsed stage file
+        public final StageGrid grid; //collision data
+
+        Entry(int level, StageFile file, StageGrid grid) {
+            this.level = level;
+            this.file = file;
+            this.grid = grid;
+        }
+    }
+
+    /**
+     * Loads every stageN.txt of a directory, ordered by ID
+     * @param assets Assets folder of the app
+     * @param arrays values/arrays.xml of the app, holds the collision behavior of every tile
+     * @return All stages of the folder
+     * @throws IOException If a file can not be read
+     * @since 1.1
+     */
+    public static List<Entry> load(File assets, File arrays) throws IOException {
+        int[] tiles_collision = readCollisionTable(arrays);
+        List<Entry> stages = new ArrayList<>();
+        File[] files = assets.listFiles();
+        if (files == null)
+            throw new IOException("Not a directory: " + assets);
+        for (File f : files) {
+            Matcher m = STAGE_NAME.matcher(f.getName());
+            if (!m.matches())
+                continue;
+            StageFile file = StageFile.read(new FileInputStream(f));
+            stages.add(new Entry(Integer.parseInt(m.group(1)), file, StageGrid.fromStageFile(file, tiles_collision)));
+        }
+        stages.sort((a, b) -> Integer.compare(a.level, b.level));
+        return stages;
+    }
+
+    /**
+     * Reads R.array.collision from the resource file
+     * @param arrays values/arrays.xml of the app
+     * @return Behavior of every tile id
+     * @throws IOException If the file can not be read or does not contain the array
+     * @since 1.1
+     */
+    public static int[] readCollisionTable(File arrays) throws IOException {
+        Matcher array = COLLISION_ARRAY.matcher(new String(Files.readAllBytes(arrays.toPath()), StandardCharsets.UTF_8));
+        if (!array.find())
+            throw new IOException("No collision array in " + arrays);
+        Matcher item = ITEM.matcher(array.group(1));
+        List<Integer> items = new ArrayList<>();
+        while (item.find())
+            items.add(Integer.parseInt(item.group(1)));
+        int[] table = new int[items.size()];
+        for (int i = 0; i < table.length; i++)
+            table[i] = items.get(i);
+        return table;
+    }
+}
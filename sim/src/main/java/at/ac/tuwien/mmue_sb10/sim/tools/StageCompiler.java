@@ -0,0 +1,31 @@
+package at.ac.tuwien.mmue_sb10.sim.tools;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import at.ac.tuwien.mmue_sb10.sim.CompiledStage;
+
+/**
+ * Compiles every stage file of the app's assets folder (stageN.txt) into the binary format the app loads (stageN.bin).
+ * Usage: StageCompiler assets_dir arrays_xml output_dir
+ * @since 1.1
+ * @author Lukas Lidauer
+ */
+public class StageCompiler {
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: StageCompiler assets_dir arrays_xml output_dir");
+            System.exit(2);
+        }
+        int[] tiles_collision = StageCatalog.readCollisionTable(new File(args[1]));
+        List<StageCatalog.Entry> stages = StageCatalog.load(new File(args[0]), new File(args[1]));
+        File output = new File(args[2]);
+        if (!output.isDirectory() && !output.mkdirs())
+            throw new IOException("Can not create " + output);
+        for (StageCatalog.Entry stage : stages)
+            Files.write(new File(output, "stage" + stage.level + ".bin").toPath(), CompiledStage.compile(stage.file, tiles_collision));
+        System.out.printf("%d stages compiled to %s%n", stages.size(), output);
+    }
+}
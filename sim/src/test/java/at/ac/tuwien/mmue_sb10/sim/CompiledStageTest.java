@@ -0,0 +1,48 @@
+package at.ac.tuwien.mmue_sb10.sim;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import at.ac.tuwien.mmue_sb10.sim.tools.StageCatalog;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Compiles every stage of the assets folder and checks that reading the compiled stage gives back the content of the stage file
+ * @since 1.1
+ * @author Lukas Lidauer
+ */
+public class CompiledStageTest {
+    @Test
+    public void everyStageSurvivesCompilation() throws IOException {
+        File arrays = new File(System.getProperty("arrays"));
+        List<StageCatalog.Entry> stages = StageCatalog.load(new File(System.getProperty("assets")), arrays);
+        int[] tiles_collision = StageCatalog.readCollisionTable(arrays);
+        assertFalse("No stages found", stages.isEmpty());
+
+        for (StageCatalog.Entry entry : stages) {
+            StageFile file = entry.file;
+            String name = "stage" + entry.level;
+            CompiledStage stage = CompiledStage.read(ByteBuffer.wrap(CompiledStage.compile(file, tiles_collision)));
+
+            assertEquals(name + " scale", file.scale, stage.scale, 0);
+            assertEquals(name + " music", file.music, stage.music);
+            assertEquals(name + " background", file.background, stage.background);
+            assertEquals(name + " player_start_x", file.player_start_x, stage.player_start_x);
+            assertEquals(name + " player_start_y", file.player_start_y, stage.player_start_y);
+            assertEquals(name + " player_velocity_x", file.player_velocity_x, stage.player_velocity_x, 0);
+            assertEquals(name + " width", file.width, stage.width);
+            assertEquals(name + " heigth", file.heigth, stage.heigth);
+            for (int y = 0; y < file.heigth; y++)
+                for (int x = 0; x < file.width; x++)
+                    assertEquals(name + " tile " + x + "," + y, file.tiles[x][y], stage.tiles[y * stage.width + x]);
+            assertArrayEquals(name + " collision", entry.grid.tiles, stage.grid.tiles);
+        }
+    }
+}
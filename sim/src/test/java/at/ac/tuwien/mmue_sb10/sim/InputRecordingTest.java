@@ -0,0 +1,93 @@
+package at.ac.tuwien.mmue_sb10.sim;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Encodes recordings with edge values and checks that decoding gives back the same recording
+ * @since 1.1
+ * @author Lukas Lidauer
+ */
+public class InputRecordingTest {
+    @Test
+    public void emptyRecording() {
+        InputRecording recording = new InputRecording(1, PlayerSim.STEP_NANOS);
+        assertEquals(0, roundTrip(recording).size());
+    }
+
+    @Test
+    public void zeroDeltas() {
+        InputRecording recording = new InputRecording(3, PlayerSim.STEP_NANOS);
+        recording.record(0, InputRecording.JUMP);
+        recording.record(0, InputRecording.GRAVITY);
+        recording.record(0, InputRecording.JUMP);
+        recording.record(5, InputRecording.GRAVITY);
+        recording.record(5, InputRecording.GRAVITY);
+        roundTrip(recording);
+    }
+
+    @Test
+    public void gapsAroundVarIntBoundaries() {
+        //a gap is stored shifted by one bit, so 63/64 and 8191/8192 are where the encoding needs another byte
+        int[] gaps = {63, 64, 127, 128, 129, 255, 256, 8191, 8192, 16384, 1 << 20, Integer.MAX_VALUE >> 2};
+        InputRecording recording = new InputRecording(7, PlayerSim.STEP_NANOS);
+        int tick = 0;
+        for (int i = 0; i < gaps.length; i++) {
+            tick += gaps[i];
+            recording.record(tick, i % 2 == 0 ? InputRecording.JUMP : InputRecording.GRAVITY);
+        }
+        recording.end_tick = tick + 128;
+        roundTrip(recording);
+    }
+
+    @Test
+    public void endState() {
+        InputRecording recording = new InputRecording(-5, 1L << 40);
+        recording.record(1, InputRecording.GRAVITY);
+        recording.end_tick = 127;
+        recording.end_pos_x = -0f;
+        recording.end_pos_y = Float.NaN;
+        recording.end_state = InputRecording.END_DEAD;
+        roundTrip(recording);
+    }
+
+    @Test
+    public void truncatedRecording() {
+        InputRecording recording = new InputRecording(2, PlayerSim.STEP_NANOS);
+        recording.record(200, InputRecording.JUMP);
+        byte[] data = recording.toBytes();
+        for (int length = 0; length < data.length; length++) {
+            try {
+                InputRecording.fromBytes(Arrays.copyOf(data, length));
+                fail("Recording truncated to " + length + " bytes was read");
+            } catch (IllegalArgumentException expected) {
+                //the truncated data must not be read
+            }
+        }
+    }
+
+    /**
+     * Encodes and decodes a recording and checks that nothing changed
+     * @param recording Recording to encode
+     * @return The decoded recording
+     */
+    private static InputRecording roundTrip(InputRecording recording) {
+        InputRecording decoded = InputRecording.fromBytes(recording.toBytes());
+        assertEquals("level", recording.level, decoded.level);
+        assertEquals("step_nanos", recording.step_nanos, decoded.step_nanos);
+        assertEquals("end_tick", recording.end_tick, decoded.end_tick);
+        assertEquals("end_pos_x", Float.floatToRawIntBits(recording.end_pos_x), Float.floatToRawIntBits(decoded.end_pos_x));
+        assertEquals("end_pos_y", Float.floatToRawIntBits(recording.end_pos_y), Float.floatToRawIntBits(decoded.end_pos_y));
+        assertEquals("end_state", recording.end_state, decoded.end_state);
+        assertEquals("size", recording.size(), decoded.size());
+        for (int i = 0; i < recording.size(); i++) {
+            assertEquals("tick " + i, recording.getTick(i), decoded.getTick(i));
+            assertEquals("input " + i, recording.getInput(i), decoded.getInput(i));
+        }
+        return decoded;
+    }
+}